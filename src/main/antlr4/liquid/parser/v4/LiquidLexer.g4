@@ -36,6 +36,14 @@ lexer grammar LiquidLexer;
     return tokens.isEmpty() ? next : tokens.poll();
   }
 
+  // also called by setInputStream, when a pooled lexer is pointed at a new input
+  @Override
+  public void reset() {
+    super.reset();
+    tokens.clear();
+    customBlockState.clear();
+  }
+
   private void handleIdChain(String chain) {
     String[] ids = chain.split("\\.");
 
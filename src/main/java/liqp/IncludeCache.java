@@ -0,0 +1,228 @@
+package liqp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the templates parsed by {@code {% include %}} tags and {@link TemplateParser#parseNamed(String)},
+ * so that a template is not loaded and parsed again on every render. Each {@link TemplateParser} owns
+ * one, see {@link TemplateParser#getIncludeCache()}.
+ * <p/>
+ * Templates are cached by their {@link TemplateLoader#getId(String) id}, and stamped with their
+ * {@link TemplateLoader#getVersion(String) version}: a template whose version has changed is loaded and
+ * parsed again. Changes the version does not reflect (such as a rewrite of a file within the resolution
+ * of the file system's clock) are only picked up after an explicit {@link #invalidate(String)}.
+ * <p/>
+ * The cache is bounded by the number of templates and by their total weight, the summed length of their
+ * sources in characters. When either bound is exceeded, the least recently used templates are evicted.
+ */
+public final class IncludeCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    public static final long DEFAULT_MAX_WEIGHT = 16L * 1024 * 1024;
+
+    private final int maxEntries;
+    private final long maxWeight;
+
+    // access ordered, guarded by itself
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public IncludeCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxEntries
+     *            the maximum number of cached templates; {@code 0} disables caching.
+     * @param maxWeight
+     *            the maximum summed length, in characters, of the sources of the cached templates.
+     */
+    public IncludeCache(int maxEntries, long maxWeight) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("maxEntries < 0");
+        }
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("maxWeight < 0");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Returns the template with the given name as parsed by the given parser, loading and parsing it
+     * only when it is not cached yet or when its version has changed since.
+     *
+     * @param parser
+     *            the parser of the template.
+     * @param loader
+     *            the loader of the template.
+     * @param name
+     *            the name of the template.
+     * @return the parsed template.
+     * @throws IOException
+     *             when the template cannot be loaded.
+     */
+    public Template get(TemplateParser parser, TemplateLoader loader, String name) throws IOException {
+        Key key = new Key(parser, loader.getId(name));
+        long version = loader.getVersion(name);
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.version == version) {
+                hits.increment();
+                return entry.template;
+            }
+        }
+        misses.increment();
+
+        // loaded and parsed outside the lock, two threads missing at the same time both parse it
+        String source = loader.load(name);
+        Template template = parser.parse(source);
+        if (maxEntries > 0 && source.length() <= maxWeight) {
+            put(key, new Entry(template, version, source.length()));
+        }
+        return template;
+    }
+
+    private void put(Key key, Entry entry) {
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                weight -= previous.length;
+            }
+            weight += entry.length;
+
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (entries.size() > maxEntries || weight > maxWeight) {
+                weight -= eldest.next().length;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Removes the template of the given file, as parsed by any parser, from this cache.
+     *
+     * @param file
+     *            the included file.
+     */
+    public void invalidate(File file) {
+        invalidate(file.getAbsolutePath());
+    }
+
+    /**
+     * Removes the template with the given id, as parsed by any parser, from this cache.
+     *
+     * @param id
+     *            the id of the template, see {@link TemplateLoader#getId(String)}.
+     */
+    public void invalidate(String id) {
+        synchronized (entries) {
+            Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Key, Entry> e = it.next();
+                if (e.getKey().id.equals(id)) {
+                    weight -= e.getValue().length;
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all templates from this cache.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * Returns the number of cached templates.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the summed length, in characters, of the sources of the cached templates.
+     */
+    public long getWeight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    /**
+     * Returns the total number of includes that were served from this cache.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the total number of includes that had to be parsed.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the total number of templates that were evicted to stay within the bounds of this cache.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private static final class Key {
+        private final TemplateParser parser;
+        private final String id;
+
+        Key(TemplateParser parser, String id) {
+            this.parser = parser;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return parser == other.parser && id.equals(other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(parser) + id.hashCode();
+        }
+    }
+
+    private static final class Entry {
+        private final Template template;
+        private final long version;
+        private final long length;
+
+        Entry(Template template, long version, long length) {
+            this.template = template;
+            this.version = version;
+            this.length = length;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 
+import liqp.RenderTransformer.ObjectAppender;
 import liqp.nodes.LNode;
 
 /**
@@ -86,6 +87,58 @@ public abstract class Insertion extends LValue {
      */
     public abstract Object render(TemplateContext context, LNode... nodes);
 
+    /**
+     * Renders this insertion straight into the given appender, where possible.
+     *
+     * The default implementation does not stream: it returns the result of
+     * {@link #render(TemplateContext, LNode...)}, which is then appended by the caller.
+     *
+     * @param context
+     *         the context (variables) with which this
+     *         node should be rendered.
+     * @param appender
+     *         the appender that receives the output.
+     * @param nodes
+     *         the nodes of this tag is created with.
+     *
+     * @return {@code null} if all output was appended, {@link #BREAK} or {@link #CONTINUE}
+     *         if the rendering was interrupted, and otherwise the rendered object that
+     *         still needs to be appended.
+     */
+    public Object renderTo(TemplateContext context, ObjectAppender appender, LNode... nodes) {
+        return render(context, nodes);
+    }
+
+    /**
+     * Returns whether rendering this insertion with the given nodes may return
+     * {@link #BREAK} or {@link #CONTINUE}.
+     *
+     * As this is unknown for insertions in general, the default implementation
+     * returns true; insertions that never interrupt a loop should override this
+     * so that the blocks containing them can be streamed.
+     *
+     * @param nodes
+     *         the nodes of this tag is created with.
+     *
+     * @return true iff rendering this insertion may be interrupted.
+     */
+    public boolean mayInterrupt(LNode... nodes) {
+        return true;
+    }
+
+    /**
+     * Returns whether rendering any of the given nodes may return {@link #BREAK}
+     * or {@link #CONTINUE}.
+     */
+    protected boolean anyMayInterrupt(LNode... nodes) {
+        for (LNode node : nodes) {
+            if (node != null && node.mayInterrupt()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Registers an insertion for global use.
      * 
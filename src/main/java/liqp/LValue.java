@@ -12,12 +12,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.BaseStream;
 
 import liqp.RenderTransformer.ObjectAppender;
 import liqp.filters.date.CustomDateFormatRegistry;
 import liqp.nodes.AtomNode;
+import liqp.parser.LiquidSequence;
 
 /**
  * An abstract class the Filter and Tag classes extend.
@@ -134,6 +137,10 @@ public abstract class LValue {
             return ((Collection<?>) value).toArray();
         }
 
+        if (isSequence(value)) {
+            return asList(value, context).toArray();
+        }
+
         if (isTemporal(value)) {
             value = asTemporal(value, context);
             return temporalAsArray((ZonedDateTime) value);
@@ -171,6 +178,15 @@ public abstract class LValue {
             return Arrays.asList((Object[]) value);
         }
 
+        if (isSequence(value)) {
+            List<Object> items = new ArrayList<>();
+            Iterator<?> iterator = sequenceIterator(value);
+            while (iterator.hasNext()) {
+                items.add(iterator.next());
+            }
+            return items;
+        }
+
         if (isTemporal(value)) {
             value = asTemporal(value, context);
             return Arrays.asList(temporalAsArray((ZonedDateTime) value));
@@ -179,6 +195,33 @@ public abstract class LValue {
         return Collections.singletonList(value);
     }
 
+    /**
+     * Returns true iff `value` is a lazily iterated sequence of items: a {@link LiquidSequence}, an
+     * `Iterator` or a `Stream`. Other `Iterable`s (such as JSON nodes or domain objects) are not
+     * sequences. Sequences may only be iterable once, converting them to an array or a list consumes them.
+     *
+     * @param value
+     *         the value to check.
+     *
+     * @return true iff `value` is a sequence.
+     */
+    public boolean isSequence(Object value) {
+        return value instanceof LiquidSequence || value instanceof Iterator || value instanceof BaseStream;
+    }
+
+    /**
+     * Returns an iterator over the items of a value for which {@link #isSequence(Object)} is true.
+     */
+    public static Iterator<?> sequenceIterator(Object value) {
+        if (value instanceof Iterator) {
+            return (Iterator<?>) value;
+        }
+        if (value instanceof BaseStream) {
+            return ((BaseStream<?, ?>) value).iterator();
+        }
+        return ((LiquidSequence<?>) value).iterator();
+    }
+
     // https://apidock.com/ruby/Time/to_a
     // Returns a ten-element array of values for time:
     // [sec, min, hour, day, month, year, wday, yday, isdst, zone]
@@ -199,14 +242,13 @@ public abstract class LValue {
     }
 
     public static ZonedDateTime asTemporal(Object value, TemplateContext context) {
-        ZonedDateTime time = ZonedDateTime.now();
         if (value instanceof TemporalAccessor) {
-            time = getZonedDateTimeFromTemporalAccessor((TemporalAccessor) value, context
+            return getZonedDateTimeFromTemporalAccessor((TemporalAccessor) value, context
                     .getRenderSettings().defaultTimeZone);
         } else if (CustomDateFormatRegistry.isCustomDateType(value)) {
-            time = CustomDateFormatRegistry.getFromCustomType(value);
+            return CustomDateFormatRegistry.getFromCustomType(value);
         }
-        return time;
+        return context != null ? context.now() : ZonedDateTime.now();
     }
 
     public static boolean isTemporal(Object value){
@@ -309,11 +351,9 @@ public abstract class LValue {
             return String.valueOf(value);
         }
 
-        Object[] array = this.asArray(value, context);
-
         StringBuilder builder = new StringBuilder();
 
-        for (Object obj : array) {
+        for (Object obj : asCollection(value, context)) {
             builder.append(this.asString(obj, context));
         }
 
@@ -342,28 +382,37 @@ public abstract class LValue {
             return value;
         }
 
-        Object[] array = this.asArray(value, context);
+        Collection<?> items = asCollection(value, context);
 
-        ObjectAppender.Controller builder = context.newObjectAppender(array.length);
+        ObjectAppender.Controller builder = context.newObjectAppender(items.size());
 
-        for (Object obj : array) {
+        for (Object obj : items) {
             builder.append(this.asAppendableObject(obj, context));
         }
 
         return builder.getResult();
     }
 
+    // a view of a value for which isArray is true, without copying it unless it is a sequence
+    private Collection<?> asCollection(Object value, TemplateContext context) {
+        if (value instanceof Collection) {
+            return (Collection<?>) value;
+        }
+        return value.getClass().isArray() ? Arrays.asList((Object[]) value) : asList(value, context);
+    }
+
     /**
-     * Returns true iff `value` is an array or a java.util.Collection.
+     * Returns true iff `value` is an array, a java.util.Collection or a sequence (see
+     * {@link #isSequence(Object)}).
      *
      * @param value
      *         the value to check.
      *
-     * @return true iff `value` is an array or a java.util.Collection.
+     * @return true iff `value` is an array, a java.util.Collection or a sequence.
      */
     public boolean isArray(Object value) {
 
-        return value != null && (value.getClass().isArray() || value instanceof Collection);
+        return value != null && (value.getClass().isArray() || value instanceof Collection || isSequence(value));
     }
 
     /**
@@ -439,7 +488,11 @@ public abstract class LValue {
         if (value instanceof CharSequence && ((CharSequence) value).length() == 0)
             return true;
 
-        if (this.isArray(value) && this.asArray(value, context).length == 0)
+        // sequences are not consumed to find out whether they are empty
+        if (this.isArray(value) && !isSequence(value) && asCollection(value, context).isEmpty())
+            return true;
+
+        if (value instanceof LiquidSequence && ((LiquidSequence<?>) value).size() == 0)
             return true;
 
         if ((value instanceof Map) && ((Map) value).isEmpty())
@@ -11,6 +11,7 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import liqp.filters.Filter;
 import liqp.filters.Filters;
 import liqp.parser.Flavor;
+import liqp.parser.PropertyAccessors;
 
 public class ParseSettings {
     public static final Flavor DEFAULT_FLAVOR = Flavor.LIQUID;
@@ -19,14 +20,21 @@ public class ParseSettings {
     public final Flavor flavor;
     public final boolean stripSpacesAroundTags;
     public final boolean stripSingleLine;
+    public final boolean optimize;
+    public final boolean bytecodeCompilation;
     public final ObjectMapper mapper;
     public final Insertions insertions;
     public final Filters filters;
 
+    // resolved on first use, see getPropertyAccessors()
+    private volatile PropertyAccessors propertyAccessors;
+
     public static class Builder {
         Flavor flavor;
         boolean stripSpacesAroundTags;
         boolean stripSingleLine;
+        boolean optimize;
+        boolean bytecodeCompilation;
         ObjectMapper mapper;
         List<Insertion> insertions = new ArrayList<>();
         List<Filter> filters = new ArrayList<>();
@@ -60,6 +68,26 @@ public class ParseSettings {
             return this;
         }
 
+        /**
+         * Sets whether the node tree of a template is simplified once it is parsed, see
+         * {@link liqp.nodes.TreeOptimizer}. Templates render the same either way; optimized ones take
+         * a little longer to parse, and render faster when they hold static text and conditions.
+         */
+        public Builder withOptimize(boolean optimize) {
+            this.optimize = optimize;
+            return this;
+        }
+
+        /**
+         * Sets whether the blocks of a template are compiled into generated classes once it is parsed,
+         * see {@link liqp.nodes.TemplateCompiler}. Templates render the same either way; compiled ones
+         * take longer to parse, and render faster once the JIT has warmed up. Off by default.
+         */
+        public Builder withBytecodeCompilation(boolean bytecodeCompilation) {
+            this.bytecodeCompilation = bytecodeCompilation;
+            return this;
+        }
+
         public Builder withMapper(ObjectMapper mapper) {
             this.mapper = mapper;
             return this;
@@ -68,6 +96,8 @@ public class ParseSettings {
         public Builder with(ParseSettings settings) {
             return withFlavor(settings.flavor) //
                     .withStripSpaceAroundTags(stripSpacesAroundTags, stripSingleLine) //
+                    .withOptimize(settings.optimize) //
+                    .withBytecodeCompilation(settings.bytecodeCompilation) //
                     .withMapper(settings.mapper) //
                     .withInsertions(settings.insertions.values()) //
                     .withFilters(settings.filters.values());
@@ -101,18 +131,35 @@ public class ParseSettings {
                 fl = Flavor.LIQUID;
             }
 
-            return new ParseSettings(fl, this.stripSpacesAroundTags, this.stripSingleLine, this.mapper,
-                    this.insertions, this.filters);
+            return new ParseSettings(fl, this.stripSpacesAroundTags, this.stripSingleLine, this.optimize,
+                    this.bytecodeCompilation, this.mapper, this.insertions, this.filters);
         }
     }
 
     private ParseSettings(Flavor flavor, boolean stripSpacesAroundTags, boolean stripSingleLine,
-            ObjectMapper mapper, List<Insertion> insertions, List<Filter> filters) {
+            boolean optimize, boolean bytecodeCompilation, ObjectMapper mapper, List<Insertion> insertions,
+            List<Filter> filters) {
         this.flavor = flavor;
         this.stripSpacesAroundTags = stripSpacesAroundTags;
         this.stripSingleLine = stripSingleLine;
+        this.optimize = optimize;
+        this.bytecodeCompilation = bytecodeCompilation;
         this.mapper = mapper;
         this.insertions = Insertions.of(insertions);
         this.filters = Filters.of(filters);
     }
+
+    /**
+     * Returns the accessors that read the properties of {@link liqp.parser.Inspectable} objects as
+     * {@link #mapper} converts them. They are resolved once for these settings, so that reading a
+     * property takes no lock.
+     */
+    public PropertyAccessors getPropertyAccessors() {
+        PropertyAccessors accessors = propertyAccessors;
+        if (accessors == null) {
+            accessors = PropertyAccessors.forMapper(mapper);
+            propertyAccessors = accessors;
+        }
+        return accessors;
+    }
 }
@@ -0,0 +1,192 @@
+package liqp;
+
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import liqp.exceptions.LiquidException;
+import liqp.parser.Flavor;
+import liquid.parser.v4.LiquidLexer;
+import liquid.parser.v4.LiquidParser;
+
+/**
+ * Keeps lexers and parsers for reuse, so that parsing a template does not create a new lexer, token
+ * stream, parser and error listeners each time. Each {@link TemplateParser} owns one, see
+ * {@link TemplateParser#getParserPool()}; a lexer and parser are taken from the pool for a single parse,
+ * pointed at the input, and put back afterwards.
+ * <p/>
+ * Input is parsed in the faster SLL prediction mode first, and parsed again in full LL mode only when
+ * that fails. The DFA the parsers build while predicting is shared by all of them (and by all pools), so
+ * parsing gets faster as more templates are parsed; {@link TemplateParser#warmUp(Iterable)} builds it up
+ * front. The counters of this class can be used to monitor how often the LL fallback is needed.
+ */
+public final class ParserPool {
+
+    public static final int DEFAULT_MAX_IDLE = Runtime.getRuntime().availableProcessors() * 2;
+
+    private static final CharStream NO_INPUT = CharStreams.fromString("");
+
+    private final boolean stripSpacesAroundTags;
+    private final boolean stripSingleLine;
+    private final boolean isLiquid;
+    private final Set<String> blockNames;
+    private final Set<String> tagNames;
+    private final int maxIdle;
+
+    // guarded by itself
+    private final ArrayDeque<Entry> idle = new ArrayDeque<>();
+
+    private final LongAdder parses = new LongAdder();
+    private final LongAdder llFallbacks = new LongAdder();
+    private final LongAdder created = new LongAdder();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param settings
+     *            the settings the templates are parsed with.
+     * @param insertions
+     *            the tags and blocks the lexer recognizes.
+     * @param maxIdle
+     *            the maximum number of lexers and parsers kept for reuse; {@code 0} disables reuse.
+     */
+    public ParserPool(ParseSettings settings, Insertions insertions, int maxIdle) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("maxIdle < 0");
+        }
+        this.stripSpacesAroundTags = settings.stripSpacesAroundTags;
+        this.stripSingleLine = settings.stripSingleLine;
+        this.isLiquid = settings.flavor == Flavor.LIQUID;
+        this.blockNames = insertions.getBlockNames();
+        this.tagNames = insertions.getTagNames();
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Parses the given input.
+     *
+     * @param input
+     *            the Liquid source.
+     * @return the root of the parse tree.
+     * @throws LiquidException
+     *             when the input cannot be lexed or parsed.
+     */
+    public ParseTree parse(CharStream input) {
+        Entry entry;
+        synchronized (idle) {
+            entry = idle.poll();
+        }
+        if (entry == null) {
+            entry = new Entry();
+            created.increment();
+        }
+
+        try {
+            return entry.parse(input);
+        } finally {
+            entry.clear();
+            synchronized (idle) {
+                if (idle.size() < maxIdle) {
+                    idle.push(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the total number of inputs parsed by this pool.
+     */
+    public long getParseCount() {
+        return parses.sum();
+    }
+
+    /**
+     * Returns the total number of inputs that failed to parse in SLL mode and were parsed again in full
+     * LL mode, which includes the inputs that have a syntax error.
+     */
+    public long getLlFallbackCount() {
+        return llFallbacks.sum();
+    }
+
+    /**
+     * Returns the total number of lexer and parser pairs this pool created; the other parses reused
+     * one.
+     */
+    public long getCreatedCount() {
+        return created.sum();
+    }
+
+    /**
+     * Returns the number of lexer and parser pairs kept for reuse.
+     */
+    public int getIdleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    private final class Entry {
+        private final LiquidLexer lexer;
+        private final CommonTokenStream tokens;
+        private final LiquidParser parser;
+
+        Entry() {
+            lexer = new LiquidLexer(NO_INPUT, stripSpacesAroundTags, stripSingleLine, blockNames, tagNames);
+            lexer.removeErrorListeners();
+            lexer.addErrorListener(new BaseErrorListener() {
+                @Override
+                public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                        int charPositionInLine, String msg, RecognitionException e) {
+                    throw new LiquidException(String.format("lexer error \"%s\" on line %s, index %s", msg,
+                            line, charPositionInLine), line, charPositionInLine, e);
+                }
+            });
+
+            tokens = new CommonTokenStream(lexer);
+            parser = new LiquidParser(tokens, isLiquid);
+            parser.removeErrorListeners();
+            parser.addErrorListener(new BaseErrorListener() {
+                @Override
+                public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                        int charPositionInLine, String msg, RecognitionException e) {
+                    throw new LiquidException(String.format("parser error \"%s\" on line %s, index %s", msg,
+                            line, charPositionInLine), line, charPositionInLine, e);
+                }
+            });
+        }
+
+        ParseTree parse(CharStream input) {
+            parses.increment();
+            lexer.setInputStream(input);
+            tokens.setTokenSource(lexer);
+            parser.setTokenStream(tokens);
+
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            try {
+                return parser.parse();
+            } catch (Exception e) {
+                llFallbacks.increment();
+                tokens.seek(0);
+                parser.reset();
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                return parser.parse();
+            }
+        }
+
+        // lets go of the input and its tokens while this entry is idle
+        void clear() {
+            lexer.setInputStream(NO_INPUT);
+            tokens.setTokenSource(lexer);
+            parser.setTokenStream(tokens);
+        }
+    }
+}
@@ -9,8 +9,10 @@ public class ProtectionSettings {
     public final int maxSizeRenderedString;
     public final long maxRenderTimeMillis;
     public final long maxTemplateSizeBytes;
+    public final boolean cooperativeRenderTimeLimit;
 
-    // A global counter that keeps track of the amount of iterations
+    // A global counter that keeps track of the amount of iterations, only used by the deprecated
+    // incrementIterations()
     private int iterations = 0;
 
     public static class Builder {
@@ -19,12 +21,14 @@ public class ProtectionSettings {
         private int maxSizeRenderedString;
         private long maxRenderTimeMillis;
         private long maxTemplateSizeBytes;
+        private boolean cooperativeRenderTimeLimit;
 
         public Builder() {
             this.maxIterations = Integer.MAX_VALUE;
             this.maxSizeRenderedString = Integer.MAX_VALUE;
             this.maxRenderTimeMillis = Long.MAX_VALUE;
             this.maxTemplateSizeBytes = Long.MAX_VALUE;
+            this.cooperativeRenderTimeLimit = false;
         }
 
         public Builder withMaxIterations(int maxIterations) {
@@ -47,18 +51,40 @@ public class ProtectionSettings {
             return this;
         }
 
+        /**
+         * When set, {@link #maxRenderTimeMillis} is enforced on the thread that calls render, by checks
+         * inside the render loop, instead of by running the render on the parser's
+         * {@link RenderExecutor}. This avoids the hand-off to another thread, but a single slow filter
+         * or tag can overrun the deadline until it returns.
+         *
+         * @param cooperativeRenderTimeLimit whether to render time-limited templates on the calling thread.
+         * @return This builder.
+         */
+        public Builder withCooperativeRenderTimeLimit(boolean cooperativeRenderTimeLimit) {
+            this.cooperativeRenderTimeLimit = cooperativeRenderTimeLimit;
+            return this;
+        }
+
         public ProtectionSettings build() {
-            return new ProtectionSettings(this.maxIterations, this.maxSizeRenderedString, this.maxRenderTimeMillis, this.maxTemplateSizeBytes);
+            return new ProtectionSettings(this.maxIterations, this.maxSizeRenderedString, this.maxRenderTimeMillis, this.maxTemplateSizeBytes, this.cooperativeRenderTimeLimit);
         }
     }
 
-    private ProtectionSettings(int maxIterations, int maxSizeRenderedString, long maxRenderTimeMillis, long maxTemplateSizeBytes) {
+    private ProtectionSettings(int maxIterations, int maxSizeRenderedString, long maxRenderTimeMillis, long maxTemplateSizeBytes, boolean cooperativeRenderTimeLimit) {
         this.maxIterations = maxIterations;
         this.maxSizeRenderedString = maxSizeRenderedString;
         this.maxRenderTimeMillis = maxRenderTimeMillis;
         this.maxTemplateSizeBytes = maxTemplateSizeBytes;
+        this.cooperativeRenderTimeLimit = cooperativeRenderTimeLimit;
     }
 
+    /**
+     * Counts an iteration against {@link #maxIterations} on this (shared) settings instance.
+     *
+     * @deprecated the count accumulates over every render using these settings; iterations are counted
+     *             per render by {@link TemplateContext#incrementIterations()}.
+     */
+    @Deprecated
     public void incrementIterations() {
 
         this.iterations++;
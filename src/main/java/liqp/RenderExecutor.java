@@ -0,0 +1,168 @@
+package liqp;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import liqp.exceptions.ExceededMaxRenderTimeException;
+
+/**
+ * Runs time-limited renders (see {@link ProtectionSettings#maxRenderTimeMillis}) on a bounded pool of
+ * daemon threads. Each {@link TemplateParser} owns one, which is created lazily on the first
+ * time-limited render; a single instance may also be shared by several parsers through
+ * {@link TemplateParser.Builder#withRenderExecutor(RenderExecutor)}.
+ * <p/>
+ * When a render exceeds its deadline the worker is interrupted, and the render is aborted at its next
+ * loop iteration. Renders that arrive while all threads are busy and the queue is full are rejected.
+ * The counters of this class can be used to monitor the saturation of the pool.
+ */
+public final class RenderExecutor {
+
+    public static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public RenderExecutor() {
+        this(DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param threads
+     *            the maximum number of renders that run at the same time.
+     * @param queueCapacity
+     *            the maximum number of renders that wait for a free thread.
+     */
+    public RenderExecutor(int threads, int queueCapacity) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads < 1");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity < 1");
+        }
+
+        String prefix = "liqp-render-" + POOL_NUMBER.incrementAndGet() + "-";
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = (r) -> {
+            Thread thread = new Thread(r, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Runs the given render on this executor and waits at most {@code timeoutMillis} for its result.
+     *
+     * @param render
+     *            the render to run.
+     * @param timeoutMillis
+     *            the deadline, in milliseconds.
+     * @return the result of the render.
+     * @throws ExceededMaxRenderTimeException
+     *             when the deadline passes; the render is cancelled.
+     * @throws RejectedExecutionException
+     *             when all threads are busy and the queue is full.
+     */
+    <T> T render(Callable<T> render, long timeoutMillis) {
+        Future<T> future;
+        try {
+            future = executor.submit(render);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new RejectedExecutionException("render rejected: " + getMaxThreads()
+                    + " renders are running and " + getQueuedCount() + " are waiting", e);
+        }
+        submitted.increment();
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timedOut.increment();
+            future.cancel(true);
+            throw new ExceededMaxRenderTimeException(timeoutMillis);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ExceededMaxRenderTimeException) {
+                // the render noticed its deadline itself, just before the wait timed out
+                timedOut.increment();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("Oops, something unexpected happened: ", cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for the render", e);
+        }
+    }
+
+    /**
+     * Returns the maximum number of renders that run at the same time.
+     */
+    public int getMaxThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Returns the (approximate) number of renders that are running right now.
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Returns the number of renders that are waiting for a free thread right now.
+     */
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Returns the total number of renders accepted by this executor.
+     */
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    /**
+     * Returns the total number of renders that were cancelled because they exceeded their deadline.
+     */
+    public long getTimedOutCount() {
+        return timedOut.sum();
+    }
+
+    /**
+     * Returns the total number of renders that were rejected because the pool was saturated.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Stops accepting new renders and interrupts the running ones.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
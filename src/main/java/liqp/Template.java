@@ -1,48 +1,55 @@
 package liqp;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
-import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.RecognitionException;
-import org.antlr.v4.runtime.Recognizer;
-import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.tree.ParseTree;
 
+import liqp.exceptions.ExceededMaxRenderTimeException;
 import liqp.exceptions.LiquidException;
 import liqp.filters.Filter;
 import liqp.filters.Filters;
 import liqp.nodes.LNode;
+import liqp.nodes.NodeSerializer;
+import liqp.nodes.TemplateCompiler;
+import liqp.nodes.TreeOptimizer;
 import liqp.parser.Flavor;
 import liqp.parser.Inspectable;
 import liqp.parser.LiquidSupport;
 import liqp.parser.v4.NodeVisitor;
-import liqp.spi.BasicTypesSupport;
 import liqp.spi.SPIHelper;
 import liqp.tags.Include;
-import liquid.parser.v4.LiquidLexer;
-import liquid.parser.v4.LiquidParser;
 
 /**
  * The main class of this library. Use one of its static <code>parse(...)</code> to get a hold of a
  * reference.
  * <p/>
+ * A parsed template is safe to be rendered by multiple threads at the same time: all state of a
+ * single render is kept in its own {@link TemplateContext}. The only exceptions are {@link #errors()}
+ * and a {@link ContextHolder}, which reflect the most recently started render.
+ * <p/>
  * Also see: https://github.com/Shopify/liquid
  */
 public class Template {
@@ -55,6 +62,18 @@ public class Template {
      */
     private final ParseTree root;
 
+    /**
+     * The root of the (immutable) node tree built from {@link #root}; it is created once when this
+     * template is parsed and walked directly on every render.
+     */
+    private final LNode rootNode;
+
+    // the number of nodes before the tree was optimized, or -1 when it was not
+    private final int unoptimizedNodeCount;
+
+    // the slots of the variables of this template in the contexts it renders in
+    private final VariableLayout layout;
+
     /**
      * This instance's insertions.
      */
@@ -76,17 +95,26 @@ public class Template {
     @Deprecated
     protected final ParseSettings parseSettings;
 
-    private TemplateContext templateContext = null;
+    // the context of the most recently started render, see errors()
+    private volatile TemplateContext templateContext = null;
 
     private ContextHolder contextHolder;
 
     private TemplateParser templateParser = null;
 
+    // the header of the format written by writeCompiled: "LQPC" and the version of the format
+    private static final int COMPILED_MAGIC = 0x4C515043;
+    private static final int COMPILED_VERSION = 1;
+
     static final class BuiltTemplate extends Template {
         BuiltTemplate(TemplateParser parser, CharStream charStream) {
             super(parser, charStream);
         }
 
+        BuiltTemplate(TemplateParser parser, DataInputStream compiled) throws IOException {
+            super(parser, compiled);
+        }
+
         @Deprecated
         @Override
         public Template withProtectionSettings(ProtectionSettings settings) {
@@ -133,23 +161,45 @@ public class Template {
 
     private Template(CharStream stream, Insertions insertions, Filters filters,
             ParseSettings parseSettings) {
+        this(stream, insertions, filters, parseSettings, null);
+    }
+
+    private Template(CharStream stream, Insertions insertions, Filters filters,
+            ParseSettings parseSettings, TemplateParser parser) {
         this.insertions = insertions.mergeWith(parseSettings.insertions);
         this.filters = filters.mergeWith(parseSettings.filters);
         this.parseSettings = parseSettings;
 
-        Set<String> blockNames = this.insertions.getBlockNames();
-        Set<String> tagNames = this.insertions.getTagNames();
+        ParserPool parserPool;
+        if (parser == null) {
+            parserPool = new ParserPool(parseSettings, this.insertions, 0);
+        } else {
+            parserPool = parser.getParserPool();
+        }
 
         this.templateSize = stream.size();
-        LiquidLexer lexer = new LiquidLexer(stream, parseSettings.stripSpacesAroundTags,
-                parseSettings.stripSingleLine, blockNames, tagNames);
         try {
-            root = parse(lexer);
+            root = parserPool.parse(stream);
         } catch (LiquidException e) {
             throw e;
         } catch (Exception e) {
             throw new RuntimeException("could not parse input: " + stream.getSourceName(), e);
         }
+
+        NodeVisitor visitor = new NodeVisitor(this.insertions, this.filters, parseSettings);
+        LNode node = visitor.visit(root);
+        this.layout = visitor.getLayout();
+        if (parseSettings.optimize) {
+            unoptimizedNodeCount = TreeOptimizer.countNodes(node);
+            node = TreeOptimizer.optimize(node, parser != null ? parser : new TemplateParser.Builder()
+                    .withParseSettings(parseSettings).build());
+        } else {
+            unoptimizedNodeCount = -1;
+        }
+        if (parseSettings.bytecodeCompilation) {
+            node = TemplateCompiler.compile(node);
+        }
+        rootNode = node;
     }
 
     @Deprecated
@@ -179,11 +229,48 @@ public class Template {
     // TemplateParser constructor
     Template(TemplateParser parser, CharStream input) {
         this(input, parser.getParseSettings().flavor.getInsertions(), parser.getParseSettings().flavor
-                .getFilters(), parser.getParseSettings());
+                .getFilters(), parser.getParseSettings(), parser);
         this.renderSettings = parser.getRenderSettings();
         this.templateParser = parser;
     }
 
+    // TemplateParser.loadCompiled constructor
+    Template(TemplateParser parser, DataInputStream compiled) throws IOException {
+        ParseSettings settings = parser.getParseSettings();
+        this.insertions = settings.flavor.getInsertions().mergeWith(settings.insertions);
+        this.filters = settings.flavor.getFilters().mergeWith(settings.filters);
+        this.parseSettings = settings;
+        this.renderSettings = parser.getRenderSettings();
+        this.templateParser = parser;
+
+        if (compiled.readInt() != COMPILED_MAGIC) {
+            throw new IOException("not a compiled template");
+        }
+        int version = compiled.readUnsignedShort();
+        if (version != COMPILED_VERSION) {
+            throw new IOException("unsupported compiled template version: " + version);
+        }
+        String flavor = compiled.readUTF();
+        if (!flavor.equals(settings.flavor.name())) {
+            throw new IOException("template was compiled for flavor " + flavor + ", not " + settings.flavor);
+        }
+        this.templateSize = compiled.readLong();
+        int unoptimizedCount = compiled.readInt();
+
+        this.root = null;
+        this.layout = new VariableLayout();
+        LNode node = NodeSerializer.read(compiled, this.insertions, this.filters, this.layout);
+        if (settings.optimize && unoptimizedCount < 0) {
+            unoptimizedCount = TreeOptimizer.countNodes(node);
+            node = TreeOptimizer.optimize(node, parser);
+        }
+        if (settings.bytecodeCompilation) {
+            node = TemplateCompiler.compile(node);
+        }
+        this.unoptimizedNodeCount = unoptimizedCount;
+        this.rootNode = node;
+    }
+
     private static CharStream fromStream(InputStream in) {
         try {
             return CharStreams.fromStream(in);
@@ -200,51 +287,70 @@ public class Template {
         }
     }
 
-    private ParseTree parse(LiquidLexer lexer) {
-
-        lexer.removeErrorListeners();
-
-        lexer.addErrorListener(new BaseErrorListener() {
-            @Override
-            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
-                    int charPositionInLine, String msg, RecognitionException e) {
-                throw new LiquidException(String.format("lexer error \"%s\" on line %s, index %s", msg,
-                        line, charPositionInLine), line, charPositionInLine, e);
-            }
-        });
-
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        LiquidParser parser = new LiquidParser(tokens, this.parseSettings.flavor == Flavor.LIQUID);
+    /**
+     * Returns the root of the parse tree of the parsed input.
+     *
+     * @return the root of the parse tree of the parsed input, or {@code null} when this template was
+     *         loaded by {@link TemplateParser#loadCompiled(InputStream)}.
+     */
+    public ParseTree getParseTree() {
+        return root;
+    }
 
-        parser.removeErrorListeners();
+    /**
+     * Returns the root of the node tree that is rendered by this template. The tree is built once, when
+     * the template is parsed, and shared by all subsequent renders.
+     *
+     * @return the root of the node tree of the parsed input.
+     */
+    public LNode getRootNode() {
+        return rootNode;
+    }
 
-        parser.addErrorListener(new BaseErrorListener() {
-            @Override
-            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
-                    int charPositionInLine, String msg, RecognitionException e) {
-                throw new LiquidException(String.format("parser error \"%s\" on line %s, index %s", msg,
-                        line, charPositionInLine), line, charPositionInLine, e);
-            }
-        });
+    /**
+     * Returns the number of nodes of the tree that is rendered by this template.
+     *
+     * @return the number of nodes of {@link #getRootNode()}.
+     */
+    public int getNodeCount() {
+        return TreeOptimizer.countNodes(rootNode);
+    }
 
-        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
-        try {
-            return parser.parse();
-        } catch (Exception e) {
-            tokens.seek(0);
-            parser.reset();
-            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
-            return parser.parse();
-        }
+    /**
+     * Returns the number of nodes of the tree of this template before it was optimized, see
+     * {@link ParseSettings.Builder#withOptimize(boolean)}.
+     *
+     * @return the number of nodes before optimization, which is {@link #getNodeCount()} when the tree
+     *         was not optimized.
+     */
+    public int getUnoptimizedNodeCount() {
+        return unoptimizedNodeCount < 0 ? getNodeCount() : unoptimizedNodeCount;
     }
 
     /**
-     * Returns the root of the parse tree of the parsed input.
+     * Writes the node tree of this template in a versioned binary form, which
+     * {@link TemplateParser#loadCompiled(InputStream)} reads back without lexing or parsing the source
+     * again. Tags and filters are written by name, and the tree is written as it is rendered, so an
+     * optimized template is loaded optimized. Several templates may be written to the same stream one
+     * after the other, and loaded in the same order. The stream is flushed, but not closed.
      *
-     * @return the root of the parse tree of the parsed input.
+     * @param out
+     *            the stream to write to.
+     * @throws java.io.NotSerializableException
+     *             when the tree holds a node that was not created by the parser, such as a literal of
+     *             a custom type.
+     * @throws IOException
+     *             when the stream cannot be written.
      */
-    public ParseTree getParseTree() {
-        return root;
+    public void writeCompiled(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(COMPILED_MAGIC);
+        data.writeShort(COMPILED_VERSION);
+        data.writeUTF(getParseSettings().flavor.name());
+        data.writeLong(templateSize);
+        data.writeInt(unoptimizedNodeCount);
+        NodeSerializer.write(rootNode, data);
+        data.flush();
     }
 
     /**
@@ -516,9 +622,12 @@ public class Template {
      * to allow this and keeping existing simplicity(when the result is a string) is: provide holder with
      * container for that data. Best container is current templateContext, and it is set into this holder
      * during creation.
+     * <p/>
+     * When a template is rendered by several threads at the same time, the holder contains the context
+     * of the most recently started render.
      */
     public static class ContextHolder {
-        private TemplateContext context;
+        private volatile TemplateContext context;
 
         private void setContext(TemplateContext context) {
             this.context = context;
@@ -534,6 +643,11 @@ public class Template {
         return this;
     }
 
+    /**
+     * Returns the errors collected by the most recently started render of this template.
+     *
+     * @return the errors, or an empty list if this template has not been rendered yet.
+     */
     public List<RuntimeException> errors() {
         return this.templateContext == null ? new ArrayList<RuntimeException>() : this.templateContext
                 .errors();
@@ -656,17 +770,121 @@ public class Template {
      * @return an object denoting the rendered template.
      */
     public Object renderToObject(final Map<String, Object> variables) {
-        if (this.getProtectionSettings().isRenderTimeLimited()) {
-            return renderToObject(variables, Executors.newSingleThreadExecutor(), true);
+        if (this.templateSize > this.getProtectionSettings().maxTemplateSizeBytes) {
+            throw new RuntimeException("template exceeds " +
+                    this.protectionSettings.maxTemplateSizeBytes + " bytes");
+        }
+        if (this.getProtectionSettings().isRenderTimeLimited()
+                && !this.getProtectionSettings().cooperativeRenderTimeLimit) {
+            return getRenderExecutor().render(() -> renderToObjectUnguarded(variables), this
+                    .getProtectionSettings().maxRenderTimeMillis);
         } else {
-            if (this.templateSize > this.getProtectionSettings().maxTemplateSizeBytes) {
-                throw new RuntimeException("template exceeds " +
-                        this.protectionSettings.maxTemplateSizeBytes + " bytes");
-            }
+            // a cooperative time limit is enforced by the checks in the render loop
             return renderToObjectUnguarded(variables);
         }
     }
 
+    /**
+     * Renders the template straight into the given {@link Appendable}, without building the complete
+     * output in memory first. The output is equal to that of {@link #render(Map)}.
+     * <p/>
+     * A custom {@link RenderTransformer} (see {@link RenderSettings.Builder#withRenderTransformer})
+     * is honored by building the output with it first, as {@link #renderToObject(Map)} does, and
+     * appending it as a whole; only the default transformer streams.
+     * <p/>
+     * The render runs on the calling thread, so a {@link ProtectionSettings#maxRenderTimeMillis} is
+     * always enforced cooperatively (see {@link ProtectionSettings.Builder#withCooperativeRenderTimeLimit(boolean)}).
+     * When {@link ProtectionSettings#maxSizeRenderedString} would be exceeded, the render is aborted
+     * before the offending output is written; the output written so far remains in {@code out}.
+     *
+     * @param variables
+     *            a Map denoting the (possibly nested) variables that can be used in this Template.
+     * @param out
+     *            the appendable that receives the rendered template.
+     */
+    public void render(final Map<String, Object> variables, Appendable out) {
+        if (this.templateSize > this.getProtectionSettings().maxTemplateSizeBytes) {
+            throw new RuntimeException("template exceeds " +
+                    this.protectionSettings.maxTemplateSizeBytes + " bytes");
+        }
+
+        TemplateContext context = newRenderContext(variables, null);
+        AppendableSink sink = new AppendableSink(out, context.getProtectionSettings().maxSizeRenderedString);
+        RenderTransformer transformer = context.getRenderSettings().getRenderTransformer();
+        if (transformer != RenderTransformerDefaultImpl.INSTANCE) {
+            // a custom transformer builds the output itself, so it is rendered as by renderToObject
+            sink.append(transformer.transformObject(context, rootNode.render(context)));
+            return;
+        }
+
+        Object rendered = rootNode.renderTo(context, sink);
+        if (rendered != null) {
+            sink.append(rendered);
+        }
+    }
+
+    /**
+     * Renders the template straight into the given {@link OutputStream}, see
+     * {@link #render(Map, Appendable)}. The stream is flushed, but not closed.
+     *
+     * @param variables
+     *            a Map denoting the (possibly nested) variables that can be used in this Template.
+     * @param out
+     *            the stream that receives the rendered template.
+     * @param charset
+     *            the charset with which the rendered template is encoded.
+     */
+    public void render(final Map<String, Object> variables, OutputStream out, Charset charset) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, charset));
+        try {
+            render(variables, writer);
+        } finally {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // appends the output of a streaming render, and guards its size
+    private static final class AppendableSink implements RenderTransformer.ObjectAppender {
+        private final Appendable out;
+        private final int maxSize;
+        private long size;
+
+        AppendableSink(Appendable out, int maxSize) {
+            this.out = out;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public void append(Object obj) {
+            String value = String.valueOf(obj);
+            size += value.length();
+            if (size > maxSize) {
+                throw new RuntimeException("rendered string exceeds " + maxSize);
+            }
+            try {
+                out.append(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private RenderExecutor getRenderExecutor() {
+        if (templateParser == null) {
+            return DefaultRenderExecutorHolder.INSTANCE;
+        }
+        return templateParser.getRenderExecutor();
+    }
+
+    // used by templates that were not created by a TemplateParser
+    private static final class DefaultRenderExecutorHolder {
+        static final RenderExecutor INSTANCE = new RenderExecutor();
+    }
+
     public String render(final Map<String, Object> variables, ExecutorService executorService,
             boolean shutdown) {
         return renderToObject(variables, executorService, shutdown).toString();
@@ -679,12 +897,13 @@ public class Template {
                     this.protectionSettings.maxTemplateSizeBytes + " bytes");
         }
 
+        Future<Object> future = null;
         try {
-            Future<Object> future = executorService.submit(() -> renderToObjectUnguarded(variables));
+            future = executorService.submit(() -> renderToObjectUnguarded(variables));
             return future.get(this.getProtectionSettings().maxRenderTimeMillis, TimeUnit.MILLISECONDS);
         } catch (TimeoutException e) {
-            throw new RuntimeException("exceeded the max amount of time (" + this
-                    .getProtectionSettings().maxRenderTimeMillis + " ms.)");
+            future.cancel(true);
+            throw new ExceededMaxRenderTimeException(this.getProtectionSettings().maxRenderTimeMillis);
         } catch (Throwable t) {
             throw new RuntimeException("Oops, something unexpected happened: ", t);
         } finally {
@@ -745,11 +964,25 @@ public class Template {
         return context;
     }
 
+    // doClearThreadLocal is kept for compatibility, nothing is kept per thread between renders anymore
     public Object renderToObjectUnguarded(Map<String, Object> variables, TemplateContext parent,
             boolean doClearThreadLocal) {
-        if (doClearThreadLocal) {
-            BasicTypesSupport.clearReferences();
+        try {
+            TemplateContext context = newRenderContext(variables, parent);
+            Object rendered = rootNode.render(context);
+
+            return context.getParser().getRenderSettings().getRenderTransformer()
+                    .transformObject(context, rendered);
+        } catch (Exception e) {
+            if (e instanceof RuntimeException) {
+                throw e;
+            } else {
+                throw new RuntimeException(e);
+            }
         }
+    }
+
+    private TemplateContext newRenderContext(Map<String, Object> variables, TemplateContext parent) {
         if (variables.containsKey(Include.INCLUDES_DIRECTORY_KEY)) {
             Object includeDirectory = variables.get(Include.INCLUDES_DIRECTORY_KEY);
             if (includeDirectory instanceof File) {
@@ -762,28 +995,18 @@ public class Template {
         }
         variables = renderSettings.evaluate(parseSettings.mapper, variables);
 
-        final NodeVisitor visitor = new NodeVisitor(this.insertions, this.filters, this.parseSettings);
-        try {
-            LNode node = visitor.visit(root);
-            if (parent == null) {
-                this.templateContext = newRootContext(variables);
-            } else {
-                this.templateContext = parent.newChildContext(variables);
-            }
-            if (this.contextHolder != null) {
-                contextHolder.setContext(templateContext);
-            }
-            Object rendered = node.render(this.templateContext);
-
-            return templateContext.getParser().getRenderSettings().getRenderTransformer()
-                    .transformObject(templateContext, rendered);
-        } catch (Exception e) {
-            if (e instanceof RuntimeException) {
-                throw e;
-            } else {
-                throw new RuntimeException(e);
-            }
+        TemplateContext context;
+        if (parent == null) {
+            context = newRootContext(variables);
+        } else {
+            context = parent.newChildContext(variables);
+        }
+        context.useLayout(layout);
+        this.templateContext = context;
+        if (this.contextHolder != null) {
+            contextHolder.setContext(context);
         }
+        return context;
     }
 
     /**
@@ -823,7 +1046,9 @@ public class Template {
 
         StringBuilder builder = new StringBuilder();
 
-        walk(root, builder);
+        if (root != null) {
+            walk(root, builder);
+        }
 
         return builder.toString();
     }
@@ -1,14 +1,19 @@
 package liqp;
 
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import liqp.RenderTransformer.ObjectAppender;
+import liqp.exceptions.ExceededMaxIterationsException;
+import liqp.exceptions.ExceededMaxRenderTimeException;
 import liqp.parser.Flavor;
+import liqp.parser.LiquidSupport;
 
 public class TemplateContext {
 
@@ -28,12 +33,25 @@ public class TemplateContext {
     @Deprecated
     public final ParseSettings parseSettings;
 
+    // a variable that is set to null, in the slots
+    private static final Object NULL = new Object();
+
+    // the layout of the template rendered in this context (inherited from the parent, unless the
+    // context renders a template of its own); the variables whose name it numbers are only in the
+    // slots, indexed by that number, the other variables are only in the map
+    private VariableLayout layout;
+    private Object[] slots;
     private Map<String, Object> variables;
+    // false while the map is the one the caller passed in, which must not lose its entries to the slots
+    private boolean ownsVariables;
     private Map<String, Object> environmentMap;
     private Map<String, Object> registry;
 
     private List<RuntimeException> errors;
 
+    // created by the root context and shared by all of its children
+    private final RenderMeter renderMeter;
+
     public TemplateContext() {
         this(TemplateParser.DEFAULT, new LinkedHashMap<>());
     }
@@ -54,18 +72,27 @@ public class TemplateContext {
     }
 
     public TemplateContext(TemplateParser parser, Map<String, Object> variables) {
-        this.parent = null;
+        this(parser, new LinkedHashMap<>(variables), true, null);
+    }
+
+    public TemplateContext(TemplateContext parent) {
+        this(parent.getParser(), new LinkedHashMap<String, Object>(), true, parent);
+    }
+
+    private TemplateContext(TemplateParser parser, Map<String, Object> variables, boolean ownsVariables,
+            TemplateContext parent) {
+        this.parent = parent;
         this.parser = parser;
         this.protectionSettings = parser.getProtectionSettings();
         this.renderSettings = parser.getRenderSettings();
         this.parseSettings = parser.getParseSettings();
-        this.variables = new LinkedHashMap<>(variables);
+        this.variables = variables;
+        this.ownsVariables = ownsVariables;
+        this.layout = VariableLayout.EMPTY;
+        useLayout(parent == null ? VariableLayout.EMPTY : parent.layout);
         this.errors = new ArrayList<>();
-    }
-
-    public TemplateContext(TemplateContext parent) {
-        this(parent.getParser(), new LinkedHashMap<String, Object>());
-        this.parent = parent;
+        this.renderMeter = parent == null ? new RenderMeter(this.protectionSettings)
+                : parent.renderMeter;
     }
 
     /**
@@ -80,8 +107,7 @@ public class TemplateContext {
     }
 
     protected TemplateContext(Map<String, Object> variables, TemplateContext parent) {
-        this(parent);
-        this.variables = variables;
+        this(parent.getParser(), variables, false, parent);
     }
 
     public TemplateParser getParser() {
@@ -96,13 +122,55 @@ public class TemplateContext {
         return new ArrayList<>(this.errors);
     }
 
+    /**
+     * Counts a single loop iteration against {@link ProtectionSettings#maxIterations}. The count is kept
+     * by the root context and shared by all of its child contexts, so the budget applies to a single
+     * render, including the templates it includes.
+     *
+     * @throws ExceededMaxIterationsException
+     *             when the budget of this render is exhausted.
+     * @throws ExceededMaxRenderTimeException
+     *             when the deadline of this render has passed.
+     */
     public void incrementIterations() {
-        this.protectionSettings.incrementIterations();
+        this.renderMeter.increment();
+    }
+
+    /**
+     * Marks a point in the render where a time-limited render may be aborted. This is cheap enough to
+     * be called for every rendered node: the deadline is only checked once every so many calls.
+     *
+     * @throws ExceededMaxRenderTimeException
+     *             when the deadline of this render has passed.
+     */
+    public void checkRenderTime() {
+        this.renderMeter.checkpoint();
+    }
+
+    /**
+     * Checks right away whether the deadline of this render has passed. Use this before expensive
+     * operations, such as loading and parsing an included template.
+     *
+     * @throws ExceededMaxRenderTimeException
+     *             when the deadline of this render has passed.
+     */
+    public void checkRenderTimeNow() {
+        this.renderMeter.checkDeadline();
+    }
+
+    /**
+     * Returns the number of loop iterations the render this context belongs to has performed so far.
+     *
+     * @return the number of iterations.
+     */
+    public int getIterations() {
+        return this.renderMeter.count;
     }
 
     public boolean containsKey(String key) {
 
-        if (this.variables.containsKey(key)) {
+        int slot = layout.find(key);
+        if (slot >= 0 ? slotValue(slot) != null : this.variables.containsKey(key)) {
             return true;
         }
 
@@ -116,9 +184,10 @@ public class TemplateContext {
     public Object get(String key) {
 
         // First try to retrieve the key from the local context
-        Object value = this.variables.get(key);
+        int slot = layout.find(key);
+        Object value = slot >= 0 ? slotValue(slot) : this.variables.get(key);
 
-        if (value != null) {
+        if (value != null && value != NULL) {
             return value;
         }
 
@@ -131,6 +200,42 @@ public class TemplateContext {
         return null;
     }
 
+    /**
+     * Returns the variable with the given slot of the given layout, as {@link #get(String)} returns the
+     * variable with its name: from the closest context in which it is not {@code null}. The contexts
+     * that render the template of the layout are read by the slot, the others by the name.
+     *
+     * @param layout
+     *            the layout of the template that reads the variable.
+     * @param slot
+     *            the slot of the variable in that layout.
+     * @return the value of the variable, or {@code null}.
+     */
+    public Object get(VariableLayout layout, int slot) {
+        TemplateContext context = this;
+        while (context.layout == layout) {
+            Object value = context.slotValue(slot);
+            if (value != null && value != NULL) {
+                return value;
+            }
+            context = context.parent;
+            if (context == null) {
+                return null;
+            }
+        }
+        return context.get(layout.name(slot));
+    }
+
+    /**
+     * Returns the slot the given name has in the layout of this context, see
+     * {@link #put(int, Object)}.
+     *
+     * @return the slot, or {@code -1} when the name has none.
+     */
+    public int slotOf(String name) {
+        return layout.find(name);
+    }
+
     public Object put(String key, Object value) {
         return this.put(key, value, false);
     }
@@ -139,6 +244,10 @@ public class TemplateContext {
 
         if (!putInRootContext || parent == null) {
             // Either store it in the local context, or this context is the root context
+            int slot = layout.find(key);
+            if (slot >= 0) {
+                return put(slot, value);
+            }
             return this.variables.put(key, value);
         }
 
@@ -146,8 +255,74 @@ public class TemplateContext {
         return parent.put(key, value, putInRootContext);
     }
 
+    /**
+     * Stores the variable with the given slot in this context, as {@link #put(String, Object)}.
+     *
+     * @param slot
+     *            the slot of the variable in the layout of this context, see {@link #slotOf(String)}.
+     * @param value
+     *            the value of the variable.
+     * @return the previous value of the variable in this context, or {@code null}.
+     */
+    public Object put(int slot, Object value) {
+        if (slots == null) {
+            slots = new Object[Math.max(slot + 1, layout.size())];
+        } else if (slot >= slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(slot + 1, layout.size()));
+        }
+        Object previous = slots[slot];
+        slots[slot] = value == null ? NULL : value;
+        return previous == NULL ? null : previous;
+    }
+
+    // the variable with the given slot in this context itself: NULL when it is set to null, null when
+    // it is not set
+    private Object slotValue(int slot) {
+        Object[] frame = slots;
+        return frame != null && slot < frame.length ? frame[slot] : null;
+    }
+
+    /**
+     * Makes this context keep the variables of the given layout in its slots, moving the variables
+     * that are already stored in this context.
+     */
+    void useLayout(VariableLayout layout) {
+        if (layout == this.layout) {
+            return;
+        }
+        if (slots != null) {
+            for (int slot = 0; slot < slots.length; slot++) {
+                if (slots[slot] != null) {
+                    this.variables.put(this.layout.name(slot), slots[slot] == NULL ? null : slots[slot]);
+                }
+            }
+            slots = null;
+        }
+        this.layout = layout;
+        if (!this.variables.isEmpty()) {
+            for (int slot = 0; slot < layout.size(); slot++) {
+                String name = layout.name(slot);
+                if (this.variables.containsKey(name)) {
+                    if (!ownsVariables) {
+                        this.variables = new LinkedHashMap<>(this.variables);
+                        ownsVariables = true;
+                    }
+                    put(slot, this.variables.remove(name));
+                }
+            }
+        }
+    }
+
     public Object remove(String key) {
 
+        int slot = layout.find(key);
+        if (slot >= 0 && slotValue(slot) != null) {
+            // Remove the key from the local context
+            Object previous = slots[slot];
+            slots[slot] = null;
+            return previous == NULL ? null : previous;
+        }
+
         if (this.variables.containsKey(key)) {
             // Remove the key from the local context
             return this.variables.remove(key);
@@ -163,7 +338,15 @@ public class TemplateContext {
     }
 
     public Map<String, Object> getVariables() {
-        return new LinkedHashMap<String, Object>(this.variables);
+        Map<String, Object> copy = new LinkedHashMap<String, Object>(this.variables);
+        if (slots != null) {
+            for (int slot = 0; slot < slots.length; slot++) {
+                if (slots[slot] != null) {
+                    copy.put(layout.name(slot), slots[slot] == NULL ? null : slots[slot]);
+                }
+            }
+        }
+        return copy;
     }
 
     public Map<String, Object> getEnvironmentMap() {
@@ -219,4 +402,113 @@ public class TemplateContext {
     public TemplateContext newChildContext(Map<String, Object> variablesForChild) {
         return new TemplateContext(variablesForChild, this);
     }
+
+    /**
+     * Returns the current time of this render, as used by {@code "now"} and {@code "today"}. It is read
+     * from the clock once, so it stays the same throughout a single render, including the templates it
+     * includes.
+     *
+     * @return the time of this render.
+     */
+    public ZonedDateTime now() {
+        return renderMeter.now();
+    }
+
+    /**
+     * Returns the {@link LiquidSupport} view of the given object, see
+     * {@link RenderSettings#evaluate(com.fasterxml.jackson.databind.ObjectMapper, Object)}. The view of
+     * an object that is not a {@link LiquidSupport} itself is remembered for a while during the render:
+     * an object that changes during a render may keep the view of an earlier conversion. Only the most
+     * recently converted objects are remembered, so iterating a large (lazy) sequence does not keep
+     * its items alive until the render ends.
+     *
+     * @param value
+     *            the object, usually an {@link liqp.parser.Inspectable}.
+     * @return the view of the object.
+     */
+    public LiquidSupport evaluate(Object value) {
+        if (value instanceof LiquidSupport) {
+            return (LiquidSupport) value;
+        }
+        return renderMeter.evaluate(value, getRenderSettings(), getParseSettings());
+    }
+
+    /**
+     * The iteration budget, deadline, clock and converted objects of a single render. It is only ever touched by the thread
+     * that performs the render, so plain fields suffice.
+     *
+     * The deadline is checked against {@link System#nanoTime()} once every {@link #CHECK_INTERVAL}
+     * iterations or checkpoints. A time-limited render that runs on a {@link RenderExecutor} is also
+     * aborted once the executor interrupts it.
+     */
+    private static final class RenderMeter {
+        // must be a power of 2
+        private static final int CHECK_INTERVAL = 64;
+        // the number of converted objects that are remembered, must be a power of 2
+        private static final int VIEW_SLOTS = 64;
+
+        private final int maxIterations;
+        private final boolean renderTimeLimited;
+        private final long maxRenderTimeMillis;
+        private final long deadlineNanos;
+        private int count;
+        private int checkpoints;
+        private ZonedDateTime now;
+        // the converted objects, by their identity hash; an object replaces the one in its slot
+        private Object[] viewed;
+        private LiquidSupport[] views;
+
+        RenderMeter(ProtectionSettings protectionSettings) {
+            this.maxIterations = protectionSettings.maxIterations;
+            this.renderTimeLimited = protectionSettings.isRenderTimeLimited();
+            this.maxRenderTimeMillis = protectionSettings.maxRenderTimeMillis;
+            this.deadlineNanos = renderTimeLimited ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(
+                    maxRenderTimeMillis) : 0;
+        }
+
+        void increment() {
+            if (++count > maxIterations) {
+                throw new ExceededMaxIterationsException(maxIterations);
+            }
+            if (renderTimeLimited && (count & (CHECK_INTERVAL - 1)) == 0) {
+                checkDeadline();
+            }
+        }
+
+        void checkpoint() {
+            if (renderTimeLimited && (++checkpoints & (CHECK_INTERVAL - 1)) == 0) {
+                checkDeadline();
+            }
+        }
+
+        ZonedDateTime now() {
+            if (now == null) {
+                now = ZonedDateTime.now();
+            }
+            return now;
+        }
+
+        LiquidSupport evaluate(Object value, RenderSettings renderSettings, ParseSettings parseSettings) {
+            if (views == null) {
+                viewed = new Object[VIEW_SLOTS];
+                views = new LiquidSupport[VIEW_SLOTS];
+            }
+            int slot = System.identityHashCode(value) & (VIEW_SLOTS - 1);
+            if (viewed[slot] == value) {
+                return views[slot];
+            }
+            Map<String, Object> map = renderSettings.evaluate(parseSettings.mapper, value).toLiquid();
+            LiquidSupport view = () -> map;
+            viewed[slot] = value;
+            views[slot] = view;
+            return view;
+        }
+
+        void checkDeadline() {
+            if (renderTimeLimited && (System.nanoTime() - deadlineNanos > 0 || Thread.currentThread()
+                    .isInterrupted())) {
+                throw new ExceededMaxRenderTimeException(maxRenderTimeMillis);
+            }
+        }
+    }
 }
@@ -0,0 +1,50 @@
+package liqp;
+
+import java.io.IOException;
+
+/**
+ * Provides the sources of templates by name, for instance to {@code {% include %}} tags and to
+ * {@link TemplateParser#parseNamed(String)}. The loader of a parser is set with
+ * {@link TemplateParser.Builder#withTemplateLoader(TemplateLoader)}; by default the templates are read
+ * from the flavor's snippets folder.
+ * <p/>
+ * Besides the source itself, a loader provides a cheap version stamp of a template, which lets the
+ * {@link IncludeCache} validate its entries without reading the source again.
+ *
+ * @see liqp.loaders.FileSystemTemplateLoader
+ * @see liqp.loaders.ClasspathTemplateLoader
+ * @see liqp.loaders.MapTemplateLoader
+ */
+public interface TemplateLoader {
+
+    /**
+     * Returns the source of the template with the given name.
+     *
+     * @param name
+     *            the name of the template, such as {@code "header.liquid"}.
+     * @return the source of the template.
+     * @throws IOException
+     *             when the template does not exist or cannot be read.
+     */
+    String load(String name) throws IOException;
+
+    /**
+     * Returns an identifier of the template with the given name that is unique across loaders, such
+     * as its absolute path.
+     *
+     * @param name
+     *            the name of the template.
+     * @return the identifier of the template.
+     */
+    String getId(String name);
+
+    /**
+     * Returns the version stamp of the template with the given name. The stamp changes whenever the
+     * source of the template changes, and is cheap to compute.
+     *
+     * @param name
+     *            the name of the template.
+     * @return the version stamp of the template.
+     */
+    long getVersion(String name);
+}
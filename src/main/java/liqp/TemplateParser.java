@@ -1,12 +1,18 @@
 package liqp;
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.antlr.v4.runtime.CharStreams;
 
+import liqp.loaders.FileSystemTemplateLoader;
+import liqp.nodes.BlockNode;
+import liqp.nodes.LNode;
 import liqp.parser.Flavor;
 
 /**
@@ -23,10 +29,33 @@ public class TemplateParser {
     private final RenderSettings renderSettings;
     private final ProtectionSettings protectionSettings;
 
+    // runs the time-limited renders, created lazily unless given to the builder
+    private volatile RenderExecutor renderExecutor;
+
+    // the lexers and parsers of this parser's templates, created lazily
+    private volatile ParserPool parserPool;
+
+    // keeps the templates parsed by include tags
+    private IncludeCache includeCache;
+
+    private TemplateLoader templateLoader;
+
+    // expressions compiled by parseExpression, least recently used evicted first
+    private static final int MAX_CACHED_EXPRESSIONS = 256;
+    private final Map<String, LNode> expressions = new LinkedHashMap<String, LNode>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LNode> eldest) {
+            return size() > MAX_CACHED_EXPRESSIONS;
+        }
+    };
+
     public static class Builder {
         private ParseSettings parseSettings = ParseSettings.DEFAULT;
         private RenderSettings renderSettings = RenderSettings.DEFAULT;
         private ProtectionSettings protectionSettings = ProtectionSettings.DEFAULT;
+        private RenderExecutor renderExecutor = null;
+        private IncludeCache includeCache = null;
+        private TemplateLoader templateLoader = null;
 
         public Builder() {
         }
@@ -46,9 +75,55 @@ public class TemplateParser {
             return this;
         }
 
+        /**
+         * Sets the {@link RenderExecutor} that runs the renders limited by
+         * {@link ProtectionSettings#maxRenderTimeMillis}.
+         *
+         * @param executor
+         *            The executor, or {@code null} to let the parser create its own when needed.
+         * @return This builder.
+         */
+        public Builder withRenderExecutor(RenderExecutor executor) {
+            this.renderExecutor = executor;
+            return this;
+        }
+
+        /**
+         * Sets the {@link IncludeCache} that keeps the templates parsed by include tags.
+         *
+         * @param cache
+         *            The cache, or {@code null} to let the parser create one with the default bounds.
+         * @return This builder.
+         */
+        public Builder withIncludeCache(IncludeCache cache) {
+            this.includeCache = cache;
+            return this;
+        }
+
+        /**
+         * Sets the {@link TemplateLoader} that provides the templates of include tags and
+         * {@link TemplateParser#parseNamed(String)}.
+         *
+         * @param loader
+         *            The loader, or {@code null} to read the templates from the flavor's snippets folder.
+         * @return This builder.
+         */
+        public Builder withTemplateLoader(TemplateLoader loader) {
+            this.templateLoader = loader;
+            return this;
+        }
+
         public TemplateParser build() {
-            return new TemplateParser(this.parseSettings, this.renderSettings,
+            TemplateParser parser = new TemplateParser(this.parseSettings, this.renderSettings,
                     this.protectionSettings);
+            parser.renderExecutor = this.renderExecutor;
+            if (this.includeCache != null) {
+                parser.includeCache = this.includeCache;
+            }
+            if (this.templateLoader != null) {
+                parser.templateLoader = this.templateLoader;
+            }
+            return parser;
         }
     }
 
@@ -57,6 +132,8 @@ public class TemplateParser {
         this.parseSettings = parseSettings;
         this.renderSettings = renderSettings;
         this.protectionSettings = protectionSettings;
+        this.includeCache = new IncludeCache();
+        this.templateLoader = new FileSystemTemplateLoader(new File(parseSettings.flavor.snippetsFolderName));
     }
 
     public Template parse(File file) throws IOException {
@@ -75,6 +152,93 @@ public class TemplateParser {
         return new Template.BuiltTemplate(this, CharStreams.fromReader(reader));
     }
 
+    /**
+     * Loads a template written by {@link Template#writeCompiled(java.io.OutputStream)}, without lexing
+     * or parsing its source. Its tags and filters are looked up by name in this parser's flavor and
+     * settings, which must be of the same flavor as the parser that wrote it. The tree is optimized
+     * and compiled when this parser's settings ask for it.
+     * <p/>
+     * No more is read from the stream than was written for the template, so the templates written to
+     * a single stream can be loaded one after the other; a buffered stream is best for that.
+     *
+     * @param input
+     *            the stream to read from, which is not closed.
+     * @return the loaded template.
+     * @throws IOException
+     *             when the stream cannot be read, or does not hold a template compiled in a format and
+     *             flavor this parser can load.
+     */
+    public Template loadCompiled(InputStream input) throws IOException {
+        return new Template.BuiltTemplate(this, new DataInputStream(input));
+    }
+
+    /**
+     * Parses the given sources to build up the DFA that the lexer and parser use to predict, which is
+     * otherwise built by the first templates that are parsed. It is shared by all parsers, so a
+     * representative corpus only needs to be parsed once, for instance at startup; the sources are not
+     * rendered, and those that do not parse are skipped.
+     *
+     * @param corpus
+     *            the sources to parse.
+     * @return the number of sources that were parsed.
+     */
+    public int warmUp(Iterable<String> corpus) {
+        ParserPool pool = getParserPool();
+        int parsed = 0;
+        for (String source : corpus) {
+            try {
+                pool.parse(CharStreams.fromString(source));
+                parsed++;
+            } catch (RuntimeException e) {
+                // a source that does not parse still primes the DFA up to its error
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Parses the template with the given name, as provided by this parser's {@link TemplateLoader}.
+     * The parsed template is kept in the {@link IncludeCache} until its version changes.
+     *
+     * @param name
+     *            the name of the template, such as {@code "header.liquid"}.
+     * @return the parsed template.
+     * @throws IOException
+     *             when the template cannot be loaded.
+     */
+    public Template parseNamed(String name) throws IOException {
+        return includeCache.get(this, templateLoader, name);
+    }
+
+    /**
+     * Parses a single Liquid expression, such as {@code item.size > 2 and item.color == 'red'}, into a
+     * node that can be rendered against any context. The parsed nodes of the most recently used
+     * expressions are cached.
+     *
+     * @param expression
+     *            the expression.
+     * @return the node that evaluates the expression.
+     */
+    public LNode parseExpression(String expression) {
+        synchronized (expressions) {
+            LNode node = expressions.get(expression);
+            if (node != null) {
+                return node;
+            }
+        }
+
+        LNode root = parse("{{ " + expression + " }}").getRootNode();
+        LNode node = root;
+        if (root instanceof BlockNode && ((BlockNode) root).getChildren().size() == 1) {
+            node = ((BlockNode) root).getChildren().get(0);
+        }
+
+        synchronized (expressions) {
+            expressions.put(expression, node);
+        }
+        return node;
+    }
+
     public ParseSettings getParseSettings() {
         return parseSettings;
     }
@@ -87,4 +251,63 @@ public class TemplateParser {
         return protectionSettings;
     }
 
+    /**
+     * Returns the {@link RenderExecutor} that runs this parser's time-limited renders, creating it on
+     * first use.
+     *
+     * @return the executor.
+     */
+    public RenderExecutor getRenderExecutor() {
+        RenderExecutor executor = renderExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = renderExecutor;
+                if (executor == null) {
+                    executor = new RenderExecutor();
+                    renderExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Returns the {@link ParserPool} that keeps the lexers and parsers of this parser, creating it on
+     * first use.
+     *
+     * @return the pool.
+     */
+    public ParserPool getParserPool() {
+        ParserPool pool = parserPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = parserPool;
+                if (pool == null) {
+                    pool = new ParserPool(parseSettings, parseSettings.flavor.getInsertions().mergeWith(
+                            parseSettings.insertions), ParserPool.DEFAULT_MAX_IDLE);
+                    parserPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Returns the {@link IncludeCache} that keeps the templates parsed by this parser's include tags.
+     *
+     * @return the cache.
+     */
+    public IncludeCache getIncludeCache() {
+        return includeCache;
+    }
+
+    /**
+     * Returns the {@link TemplateLoader} that provides the templates of this parser's include tags.
+     *
+     * @return the loader.
+     */
+    public TemplateLoader getTemplateLoader() {
+        return templateLoader;
+    }
+
 }
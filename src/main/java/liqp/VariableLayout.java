@@ -0,0 +1,77 @@
+package liqp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The numbers of the variable names a single template uses, so that a {@link TemplateContext} in which
+ * that template renders can keep those variables in an array instead of a map.
+ * <p/>
+ * Each {@link Template} owns a layout, which is filled while the template is parsed (with the names of
+ * its lookups, loop variables and {@code assign} and {@code capture} targets) and only read afterwards.
+ * Only the first {@link #MAX_SLOTS} names are numbered; other names, and names only known at render
+ * time (like those of {@code [var]} lookups), are kept in the map of the context instead.
+ */
+public final class VariableLayout {
+
+    /**
+     * The maximum number of numbered names of a template.
+     */
+    public static final int MAX_SLOTS = 256;
+
+    // the layout of contexts that do not render a template of their own
+    static final VariableLayout EMPTY = new VariableLayout();
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * Numbers the given name, if it is not numbered yet.
+     *
+     * @return the number of the name, or {@code -1} when the template uses too many names.
+     */
+    public int register(String name) {
+        Integer slot = slots.get(name);
+        if (slot != null) {
+            return slot;
+        }
+        if (this == EMPTY || names.size() >= MAX_SLOTS) {
+            return -1;
+        }
+        slots.put(name, names.size());
+        names.add(name);
+        return names.size() - 1;
+    }
+
+    /**
+     * Returns the number of the given name, or {@code -1} when it is not numbered.
+     */
+    public int find(String name) {
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Returns the name of the given number.
+     */
+    public String name(int slot) {
+        return names.get(slot);
+    }
+
+    /**
+     * Returns the numbered names, in the order of their numbers.
+     */
+    public List<String> names() {
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Returns the number of numbered names.
+     */
+    public int size() {
+        return names.size();
+    }
+}
@@ -20,4 +20,9 @@ public class Capture extends Block {
 
         return null;
     }
+
+    @Override
+    public boolean mayInterrupt(LNode... nodes) {
+        return false;
+    }
 }
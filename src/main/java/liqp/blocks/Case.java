@@ -1,5 +1,6 @@
 package liqp.blocks;
 
+import liqp.RenderTransformer.ObjectAppender;
 import liqp.TemplateContext;
 import liqp.nodes.BlockNode;
 import liqp.nodes.LNode;
@@ -12,6 +13,26 @@ public class Case extends Block {
     @Override
     public Object render(TemplateContext context, LNode... nodes) {
 
+        LNode block = selectBlock(context, nodes);
+
+        return block == null ? null : block.render(context);
+    }
+
+    @Override
+    public Object renderTo(TemplateContext context, ObjectAppender appender, LNode... nodes) {
+
+        LNode block = selectBlock(context, nodes);
+
+        return block == null ? null : block.renderTo(context, appender);
+    }
+
+    @Override
+    public boolean mayInterrupt(LNode... nodes) {
+        return anyMayInterrupt(nodes);
+    }
+
+    private LNode selectBlock(TemplateContext context, LNode... nodes) {
+
         //        ^(CASE condition           var
         //            ^(WHEN term+ block)    1,2,3  b1
         //            ^(ELSE block?))               b2
@@ -24,7 +45,7 @@ public class Case extends Block {
 
             if(i == nodes.length - 1 && node instanceof BlockNode) {
                 // this must be the trailing (optional) else-block
-                return node.render(context);
+                return node;
             }
             else {
 
@@ -47,7 +68,7 @@ public class Case extends Block {
                 }
 
                 if(hit) {
-                    return node.render(context);
+                    return node;
                 }
             }
         }
@@ -12,4 +12,9 @@ public class Comment extends Block {
     public Object render(TemplateContext context, LNode... nodes) {
         return "";
     }
+
+    @Override
+    public boolean mayInterrupt(LNode... nodes) {
+        return false;
+    }
 }
@@ -79,4 +79,9 @@ public class Cycle extends Block {
             return obj;
         }
     }
+
+    @Override
+    public boolean mayInterrupt(LNode... nodes) {
+        return false;
+    }
 }
@@ -1,10 +1,13 @@
 package liqp.blocks;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
 import java.util.Map;
 import java.util.Stack;
 
@@ -12,9 +15,13 @@ import liqp.RenderTransformer.ObjectAppender;
 import liqp.TemplateContext;
 import liqp.nodes.AtomNode;
 import liqp.nodes.BlockNode;
+import liqp.nodes.CompiledBlockNode;
 import liqp.nodes.LNode;
 import liqp.parser.Inspectable;
+import liqp.parser.LiquidDrop;
+import liqp.parser.LiquidSequence;
 import liqp.parser.LiquidSupport;
+import liqp.parser.PageableCollection;
 
 /**
  * Documentation:
@@ -53,6 +60,25 @@ public class For extends Block {
      */
     @Override
     public Object render(TemplateContext context, LNode... nodes) {
+        return render(context, null, nodes);
+    }
+
+    @Override
+    public Object renderTo(TemplateContext context, ObjectAppender appender, LNode... nodes) {
+        return render(context, appender, nodes);
+    }
+
+    @Override
+    public boolean mayInterrupt(LNode... nodes) {
+        // the loop itself handles break and continue, only the else-block of an array loop passes them on
+        boolean array = super.asBoolean(nodes[0].render(null));
+        return array && nodes[4] != null && nodes[4].mayInterrupt();
+    }
+
+    /*
+     * Renders the loop into the given appender, or into a new one when it is null
+     */
+    private Object render(TemplateContext context, ObjectAppender appender, LNode... nodes) {
 
         // The first node in the array denotes whether this is a for-tag
         // over an array, `for item in array ...`, or a for-tag over a
@@ -66,7 +92,7 @@ public class For extends Block {
         // Each for tag has its own context that keeps track of its own variables (scope)
         TemplateContext nestedContext = new TemplateContext(context);
 
-        Object rendered = array ? renderArray(id, nestedContext, tagName, reversed, nodes) : renderRange(id, nestedContext, tagName, reversed, nodes);
+        Object rendered = array ? renderArray(id, nestedContext, appender, tagName, reversed, nodes) : renderRange(id, nestedContext, appender, tagName, reversed, nodes);
 
         // When context.renderSettings.raiseExceptionsInStrictMode=false,
         // don't allow nested errors to be lost
@@ -77,7 +103,7 @@ public class For extends Block {
         return rendered;
     }
 
-    private Object renderArray(String id, TemplateContext context, String tagName, boolean reversed, LNode... tokens) {
+    private Object renderArray(String id, TemplateContext context, ObjectAppender appender, String tagName, boolean reversed, LNode... tokens) {
         Object data = tokens[2].render(context);
         if (AtomNode.isEmpty(data) || "".equals(data)) {
             data = new ArrayList<>();
@@ -90,57 +116,71 @@ public class For extends Block {
         int limit = attributes.get(LIMIT);
 
         if (data instanceof Inspectable) {
-            LiquidSupport evaluated = context.getRenderSettings().evaluate(context.getParseSettings().mapper, data);
+            LiquidSupport evaluated = context.evaluate(data);
             data = evaluated.toLiquid();
         }
         if (data instanceof Map) {
             data = mapAsArray((Map<?,?>) data);
         }
-        Object[] array = super.asArray(data, context);
+        boolean pageable = data instanceof PageableCollection;
+        if (!pageable && super.isSequence(data)) {
+            return renderSequence(id, context, appender, tagName, reversed, from, limit, data, tokens);
+        }
+        // lists are iterated in place, only other collections are copied, and only the window
+        // of a pageable collection is fetched
+        List<?> list = pageable ? null : super.asList(data, context);
+        int size = pageable ? ((PageableCollection<?>) data).size() : list.size();
 
         LNode block = tokens[3];
         LNode blockIfEmptyOrNull = tokens[4];
 
-        if(array == null || array.length == 0) {
-            return blockIfEmptyOrNull == null ? null : blockIfEmptyOrNull.render(context);
+        if(size == 0) {
+            if (blockIfEmptyOrNull == null) {
+                return null;
+            }
+            return appender == null ? blockIfEmptyOrNull.render(context) : blockIfEmptyOrNull.renderTo(context, appender);
         }
 
 
-        // these conversions still works with original array without cloning
+        // these conversions still works with original list without cloning
         // by just fixing offsets
         // from - from
         // to = limit ? limit.to_i + from : nil
         int to;
         if (limit > -1) {
-            to = Math.min(from + limit, array.length);
+            to = Math.min(from + limit, size);
         } else {
-            to = array.length;
+            to = size;
         }
-        from = Math.min(from, array.length);
+        from = Math.min(from, size);
         int length = to - from;
 
-        List<Object> arrayList = Arrays.asList(array).subList(from, to);
-        if (reversed) {
-            ArrayList<Object> listCopy = new ArrayList<>(arrayList);
-            Collections.reverse(listCopy);
-            arrayList = listCopy;
-        }
-
         // now the current offset and limit is known, so its safe to set "continue" lexem
         // in case of fail it will fail
         // offsets[@name] = from + segment.length
         Map<String, Integer> registry = context.getRegistry(TemplateContext.REGISTRY_FOR);
         registry.put(tagName, from + length);
 
+        // the index of the window in the list
+        int first = from;
+        if (pageable) {
+            list = ((PageableCollection<?>) data).slice(from, length);
+            length = Math.min(length, list.size());
+            first = 0;
+        }
+
         ForLoopDrop forLoopDrop = createLoopDropInStack(context, tagName, length);
+        int slot = context.slotOf(id);
 
-        ObjectAppender.Controller builder = context.newObjectAppender(arrayList.size());
+        ObjectAppender.Controller builder = appender == null ? context.newObjectAppender(length) : null;
 
+        // walks the window forwards, or backwards from its end when reversed
+        ListIterator<?> items = list.listIterator(reversed ? first + length : first);
         try {
-            for (Object o : arrayList) {
+            for (int i = 0; i < length; i++) {
                 context.incrementIterations();
-                context.put(id, o);
-                boolean isBreak = renderForLoopBody(context, builder, ((BlockNode) block).getChildren());
+                putVariable(context, id, slot, reversed ? items.previous() : items.next());
+                boolean isBreak = renderForLoopBody(context, builder, appender, block);
                 forLoopDrop.increment();
                 if (isBreak) {
                     break;
@@ -150,7 +190,76 @@ public class For extends Block {
             popLoopDropFromStack(context);
         }
 
-        return builder.getResult();
+        return builder == null ? null : builder.getResult();
+    }
+
+    /*
+     * Iterates a lazy sequence (see LValue#isSequence) without loading it in memory, except for the
+     * window of a reversed loop, or the rest of the window when forloop.length or forloop.rindex is read
+     */
+    private Object renderSequence(String id, TemplateContext context, ObjectAppender appender, String tagName,
+            boolean reversed, int from, int limit, Object data, LNode... tokens) {
+
+        Iterator<?> iterator = sequenceIterator(data);
+
+        LNode block = tokens[3];
+        LNode blockIfEmptyOrNull = tokens[4];
+
+        if (!iterator.hasNext()) {
+            if (blockIfEmptyOrNull == null) {
+                return null;
+            }
+            return appender == null ? blockIfEmptyOrNull.render(context) : blockIfEmptyOrNull.renderTo(context, appender);
+        }
+
+        for (int skipped = 0; skipped < from && iterator.hasNext(); skipped++) {
+            iterator.next();
+        }
+
+        LazyWindow window = new LazyWindow(iterator, limit);
+        if (reversed) {
+            window.reverse();
+        }
+
+        // the length is only known up front when the sequence tells its size
+        int size = data instanceof LiquidSequence ? ((LiquidSequence<?>) data).size() : -1;
+        int length = -1;
+        if (size >= 0) {
+            length = Math.max(0, size - from);
+            if (limit > -1) {
+                length = Math.min(length, limit);
+            }
+        }
+
+        Stack<ForLoopDrop> stack = getParentForloopDropStack(context);
+        ForLoopDrop forLoopDrop = length >= 0
+                ? new ForLoopDrop(tagName, length, stack.empty() ? null : stack.peek())
+                : new ForLoopDrop(tagName, window, stack.empty() ? null : stack.peek());
+        pushLoopDrop(context, stack, forLoopDrop);
+        int slot = context.slotOf(id);
+
+        ObjectAppender.Controller builder = appender == null ? context.newObjectAppender(length >= 0 ? length : 16) : null;
+
+        try {
+            while (window.hasNext()) {
+                context.incrementIterations();
+                putVariable(context, id, slot, window.next());
+                boolean isBreak = renderForLoopBody(context, builder, appender, block);
+                forLoopDrop.increment();
+                if (isBreak) {
+                    break;
+                }
+            }
+        } finally {
+            popLoopDropFromStack(context);
+
+            // offsets[@name] = from + segment.length, where the items after a break are not counted
+            // unless the length is known
+            Map<String, Integer> registry = context.getRegistry(TemplateContext.REGISTRY_FOR);
+            registry.put(tagName, from + (length >= 0 ? length : window.consumed()));
+        }
+
+        return builder == null ? null : builder.getResult();
     }
 
     private ForLoopDrop createLoopDropInStack(TemplateContext context, String tagName, int length) {
@@ -160,11 +269,24 @@ public class For extends Block {
             parent = stack.peek();
         }
         ForLoopDrop forLoopDrop =  new ForLoopDrop(tagName, length, parent);
-        stack.push(forLoopDrop);
-        context.put(FORLOOP, forLoopDrop);
+        pushLoopDrop(context, stack, forLoopDrop);
         return forLoopDrop;
     }
 
+    private void pushLoopDrop(TemplateContext context, Stack<ForLoopDrop> stack, ForLoopDrop forLoopDrop) {
+        stack.push(forLoopDrop);
+        putVariable(context, FORLOOP, context.slotOf(FORLOOP), forLoopDrop);
+    }
+
+    // stores a variable of the loop in its scope, by its slot when it has one
+    private static void putVariable(TemplateContext context, String name, int slot, Object value) {
+        if (slot >= 0) {
+            context.put(slot, value);
+        } else {
+            context.put(name, value);
+        }
+    }
+
     public void popLoopDropFromStack(TemplateContext context) {
         Stack<ForLoopDrop> stack = getParentForloopDropStack(context);
         if (!stack.isEmpty()) {
@@ -173,12 +295,21 @@ public class For extends Block {
     }
 
 
-    private boolean renderForLoopBody(TemplateContext context, ObjectAppender.Controller builder, List<LNode> children) {
+    /*
+     * Renders the body into the builder, or streams it into the appender when there is no builder
+     */
+    private boolean renderForLoopBody(TemplateContext context, ObjectAppender.Controller builder, ObjectAppender appender, LNode block) {
         boolean isBreak = false;
+        ObjectAppender out = builder != null ? builder : appender;
+
+        if (block instanceof CompiledBlockNode) {
+            // the children are rendered by generated code, as below
+            return ((CompiledBlockNode) block).renderLoopBody(context, out, builder == null) == BREAK;
+        }
 
-        for (LNode node : children) {
+        for (LNode node : ((BlockNode) block).getChildren()) {
 
-            Object value = node.render(context);
+            Object value = builder != null ? node.render(context) : node.renderTo(context, appender);
 
             if(value == null) {
                 continue;
@@ -197,19 +328,17 @@ public class For extends Block {
 
             if(super.isArray(value)) {
 
-                Object[] arr = super.asArray(value, context);
-
-                for (Object obj : arr) {
-                    builder.append(obj);
+                for (Object obj : super.asList(value, context)) {
+                    out.append(obj);
                 }
             } else {
-                builder.append(super.asAppendableObject(value, context));
+                out.append(super.asAppendableObject(value, context));
             }
         }
         return isBreak;
     }
 
-    private Object renderRange(String id, TemplateContext context, String tagName, boolean reversed, LNode... tokens) {
+    private Object renderRange(String id, TemplateContext context, ObjectAppender appender, String tagName, boolean reversed, LNode... tokens) {
         // attributes start from index 7
         Map<String, Integer> attributes = getAttributes(7, context, tagName, tokens);
 
@@ -231,8 +360,9 @@ public class For extends Block {
         int length = (to - from);
 
         ForLoopDrop forLoopDrop = createLoopDropInStack(context, tagName, length);
-        
-        ObjectAppender.Controller builder = context.newObjectAppender(effectiveTo - from + offset + 1);
+        int slot = context.slotOf(id);
+
+        ObjectAppender.Controller builder = appender == null ? context.newObjectAppender(effectiveTo - from + offset + 1) : null;
         try {
             for (int i = from + offset; i <= effectiveTo; i++) {
                 int realI;
@@ -243,8 +373,8 @@ public class For extends Block {
                 }
 
                 context.incrementIterations();
-                context.put(id, realI);
-                boolean isBreak = renderForLoopBody(context, builder, ((BlockNode)block).getChildren());
+                putVariable(context, id, slot, realI);
+                boolean isBreak = renderForLoopBody(context, builder, appender, block);
                 forLoopDrop.increment();
                 if(isBreak) {
                     // break from outer loop
@@ -255,7 +385,7 @@ public class For extends Block {
             popLoopDropFromStack(context);
         }
 
-        return builder.getResult();
+        return builder == null ? null : builder.getResult();
     }
 
     private Stack<ForLoopDrop> getParentForloopDropStack(TemplateContext context) {
@@ -302,26 +432,123 @@ public class For extends Block {
         return attributes;
     }
 
-    public static class ForLoopDrop implements LiquidSupport {
+    /*
+     * The items of a lazy sequence after the offset of the loop and up to its limit. Items are buffered
+     * only when the rest of the window has to be counted (or reversed).
+     */
+    static final class LazyWindow {
+
+        private final Iterator<?> iterator;
+
+        // the number of items that may still be taken from the iterator
+        private int allowance;
+
+        private final List<Object> buffer = new ArrayList<>();
+        private int read;
+
+        private int consumed;
+
+        LazyWindow(Iterator<?> iterator, int limit) {
+            this.iterator = iterator;
+            this.allowance = limit > -1 ? limit : Integer.MAX_VALUE;
+        }
+
+        boolean hasNext() {
+            return read < buffer.size() || (allowance > 0 && iterator.hasNext());
+        }
+
+        Object next() {
+            consumed++;
+            if (read < buffer.size()) {
+                return buffer.get(read++);
+            }
+            allowance--;
+            return iterator.next();
+        }
+
+        int consumed() {
+            return consumed;
+        }
+
+        // the total number of items of the window, which buffers the ones that were not read yet
+        int length() {
+            while (allowance > 0 && iterator.hasNext()) {
+                buffer.add(iterator.next());
+                allowance--;
+            }
+            return consumed + buffer.size() - read;
+        }
+
+        void reverse() {
+            length();
+            Collections.reverse(buffer.subList(read, buffer.size()));
+        }
+    }
+
+    public static class ForLoopDrop implements LiquidDrop {
 
         private final Map<String, Object> map = new HashMap<>();
 
+        private final String name;
+
         private final ForLoopDrop parentloop;
 
         private int index;
 
         private int length;
 
+        // the window of a lazy loop, whose length is only counted when it is read
+        private final LazyWindow window;
+
         public ForLoopDrop(String forName, int length, ForLoopDrop parent) {
-            map.put(NAME, forName);
+            this.name = forName;
             this.length = length;
             this.index = 0;
             this.parentloop = parent;
+            this.window = null;
+        }
+
+        ForLoopDrop(String forName, LazyWindow window, ForLoopDrop parent) {
+            this.name = forName;
+            this.length = -1;
+            this.index = 0;
+            this.parentloop = parent;
+            this.window = window;
+        }
+
+        @Override
+        public Object getProperty(String property) {
+            switch (property) {
+                case LENGTH: return length();
+                case INDEX: return index + 1;
+                case INDEX0: return index;
+                case RINDEX: return length() - index;
+                case RINDEX0: return length() - index - 1;
+                case FIRST: return index == 0;
+                case LAST: return window != null ? !window.hasNext() : index == length - 1;
+                case NAME: return name;
+                case PARENTLOOP: return parentloop;
+                default: return UNDEFINED;
+            }
         }
 
         @Override
         public Map<String, Object> toLiquid() {
-            map.put(LENGTH, length);
+            if (window != null) {
+                return new LazyLoopMap();
+            }
+            return fill();
+        }
+
+        private int length() {
+            if (window != null) {
+                length = window.length();
+            }
+            return length;
+        }
+
+        private Map<String, Object> fill() {
+            map.put(LENGTH, length());
             map.put(INDEX, index + 1);
             map.put(INDEX0, index);
             map.put(RINDEX, length - index);
@@ -330,6 +557,7 @@ public class For extends Block {
             boolean last = (index == (length-1));
             map.put(FIRST, first);
             map.put(LAST, last);
+            map.put(NAME, name);
             if (parentloop != null) {
                 map.put(PARENTLOOP, parentloop);
             }
@@ -339,5 +567,32 @@ public class For extends Block {
         public void increment() {
             index++;
         }
+
+        /*
+         * The properties of a lazy loop, which only count its items when forloop.length, forloop.rindex
+         * or forloop.rindex0 are read (or when all properties are).
+         */
+        private class LazyLoopMap extends AbstractMap<String, Object> {
+
+            @Override
+            public Object get(Object key) {
+                Object value = key instanceof String ? getProperty((String) key) : UNDEFINED;
+                return value == UNDEFINED ? null : value;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                if (PARENTLOOP.equals(key)) {
+                    return parentloop != null;
+                }
+                return LENGTH.equals(key) || INDEX.equals(key) || INDEX0.equals(key) || RINDEX.equals(key)
+                        || RINDEX0.equals(key) || FIRST.equals(key) || LAST.equals(key) || NAME.equals(key);
+            }
+
+            @Override
+            public Set<Entry<String, Object>> entrySet() {
+                return fill().entrySet();
+            }
+        }
     }
 }
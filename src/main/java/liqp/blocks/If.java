@@ -1,5 +1,6 @@
 package liqp.blocks;
 
+import liqp.RenderTransformer.ObjectAppender;
 import liqp.TemplateContext;
 import liqp.nodes.LNode;
 
@@ -11,13 +12,33 @@ public class If extends Block {
     @Override
     public Object render(TemplateContext context, LNode... nodes) {
 
+        LNode blockNode = selectBlock(context, nodes);
+
+        return blockNode == null ? null : blockNode.render(context);
+    }
+
+    @Override
+    public Object renderTo(TemplateContext context, ObjectAppender appender, LNode... nodes) {
+
+        LNode blockNode = selectBlock(context, nodes);
+
+        return blockNode == null ? null : blockNode.renderTo(context, appender);
+    }
+
+    @Override
+    public boolean mayInterrupt(LNode... nodes) {
+        return anyMayInterrupt(nodes);
+    }
+
+    private LNode selectBlock(TemplateContext context, LNode... nodes) {
+
         for (int i = 0; i < nodes.length - 1; i += 2) {
 
             Object exprNodeValue = nodes[i].render(context);
             LNode blockNode = nodes[i + 1];
 
             if (super.asBoolean(exprNodeValue)) {
-                return blockNode.render(context);
+                return blockNode;
             }
         }
 
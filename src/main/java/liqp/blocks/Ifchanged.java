@@ -36,4 +36,9 @@ public class Ifchanged extends Block {
             return null;
         }
     }
+
+    @Override
+    public boolean mayInterrupt(LNode... nodes) {
+        return false;
+    }
 }
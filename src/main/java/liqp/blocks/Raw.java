@@ -12,4 +12,9 @@ public class Raw extends Block {
     public Object render(TemplateContext context, LNode... nodes) {
         return nodes[0].render(context);
     }
+
+    @Override
+    public boolean mayInterrupt(LNode... nodes) {
+        return false;
+    }
 }
@@ -3,10 +3,12 @@ package liqp.blocks;
 import liqp.TemplateContext;
 import liqp.RenderTransformer.ObjectAppender;
 import liqp.nodes.LNode;
-import liqp.parser.LiquidSupport;
+import liqp.parser.LiquidDrop;
+import liqp.parser.PageableCollection;
 
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 public class Tablerow extends Block {
@@ -48,38 +50,68 @@ public class Tablerow extends Block {
      */
     @Override
     public Object render(TemplateContext context, LNode... nodes) {
+        return render(context, null, nodes);
+    }
+
+    @Override
+    public Object renderTo(TemplateContext context, ObjectAppender appender, LNode... nodes) {
+        return render(context, appender, nodes);
+    }
+
+    @Override
+    public boolean mayInterrupt(LNode... nodes) {
+        return false;
+    }
+
+    /*
+     * Renders the table into the given appender, or into a new one when it is null
+     */
+    private Object render(TemplateContext context, ObjectAppender appender, LNode... nodes) {
 
         String valueName = super.asString(nodes[0].render(context), context);
-        Object[] collection = super.asArray(nodes[1].render(context), context);
+        // lists are iterated in place, only other collections are copied, and only the window
+        // of a pageable collection is fetched
+        Object data = nodes[1].render(context);
+        PageableCollection<?> pageable = data instanceof PageableCollection ? (PageableCollection<?>) data : null;
+        List<?> collection = pageable == null ? super.asList(data, context) : null;
+        int size = pageable == null ? collection.size() : pageable.size();
         LNode block = nodes[2];
-        Map<String, Integer> attributes = getAttributes(collection, 3, context, nodes);
+        Map<String, Integer> attributes = getAttributes(size, 3, context, nodes);
 
         int cols = attributes.get(COLS);
         int limit = attributes.get(LIMIT);
         int offset = attributes.get(OFFSET);
 
-        if(offset != 0) {
-            if ((collection.length > 0) && (offset < collection.length)) {
-                collection = Arrays.copyOfRange(collection, offset, collection.length);
-            } else {
-                collection = new Object[]{};
-            }
+        if (offset < 0 || offset >= size) {
+            offset = size;
         }
 
         TemplateContext nestedContext = new TemplateContext(context);
-        int total = Math.min(collection.length, limit);
+        int total = Math.min(size - offset, limit);
+        if (pageable != null) {
+            collection = pageable.slice(offset, Math.max(total, 0));
+            total = Math.min(total, collection.size());
+            offset = 0;
+        }
         TablerowloopDrop tablerowloopDrop = new TablerowloopDrop(total, cols);
         nestedContext.put(TABLEROWLOOP, tablerowloopDrop);
 
 
-        ObjectAppender.Controller builder = context.newObjectAppender(total * 5);
+        ObjectAppender.Controller controller = appender == null ? context.newObjectAppender(total * 5) : null;
+        ObjectAppender builder = controller != null ? controller : appender;
         if (total == 0) {
             builder.append("<tr class=\"row1\">\n</tr>\n");
         } else {
+            Iterator<?> items = collection.listIterator(offset);
+            int slot = nestedContext.slotOf(valueName);
             for (int i = 0, c = 1, r = 0; i < total; i++, c++) {
                 context.incrementIterations();
 
-                nestedContext.put(valueName, collection[i]);
+                if (slot >= 0) {
+                    nestedContext.put(slot, items.next());
+                } else {
+                    nestedContext.put(valueName, items.next());
+                }
                 if(c == 1) {
                     r++;
                     builder.append("<tr class=\"row");
@@ -91,7 +123,10 @@ public class Tablerow extends Block {
                 builder.append("<td class=\"col");
                 builder.append(c);
                 builder.append("\">");
-                builder.append(super.asAppendableObject(block.render(nestedContext), context));
+                Object rendered = controller != null ? block.render(nestedContext) : block.renderTo(nestedContext, builder);
+                if (controller != null || rendered != null) {
+                    builder.append(super.asAppendableObject(rendered, context));
+                }
                 builder.append("</td>");
 
                 if(c == cols || i == total - 1) {
@@ -105,14 +140,14 @@ public class Tablerow extends Block {
         nestedContext.remove(TABLEROWLOOP);
         nestedContext.remove(valueName);
 
-        return builder.getResult();
+        return controller == null ? null : controller.getResult();
     }
 
-    private Map<String, Integer> getAttributes(Object[] collection, int fromIndex, TemplateContext context, LNode... tokens) {
+    private Map<String, Integer> getAttributes(int size, int fromIndex, TemplateContext context, LNode... tokens) {
 
         Map<String, Integer> attributes = new HashMap<String, Integer>();
 
-        attributes.put(COLS, collection.length);
+        attributes.put(COLS, size);
         attributes.put(LIMIT, Integer.MAX_VALUE);
         attributes.put(OFFSET, 0);
 
@@ -130,7 +165,7 @@ public class Tablerow extends Block {
 
         return attributes;
     }
-    public static class TablerowloopDrop implements LiquidSupport {
+    public static class TablerowloopDrop implements LiquidDrop {
         private final long length;
         private final long cols;
         private long row;
@@ -146,6 +181,25 @@ public class Tablerow extends Block {
             this.index = 0;
         }
 
+        @Override
+        public Object getProperty(String name) {
+            switch (name) {
+                case LENGTH: return length;
+                case INDEX0: return index;
+                case INDEX: return index + 1;
+                case RINDEX0: return length - index - 1;
+                case RINDEX: return length - index;
+                case FIRST: return index == 0;
+                case LAST: return index == length - 1;
+                case COL0: return col - 1;
+                case COL: return col;
+                case COL_FIRST: return col == 1;
+                case COL_LAST: return col == cols;
+                case ROW: return row;
+                default: return UNDEFINED;
+            }
+        }
+
         @Override
         public Map<String, Object> toLiquid() {
             tablerowloopContext.put(LENGTH, length);
@@ -0,0 +1,8 @@
+package liqp.exceptions;
+
+public class ExceededMaxRenderTimeException extends RuntimeException {
+
+    public ExceededMaxRenderTimeException(long maxRenderTimeMillis) {
+        super("exceeded the max amount of time (" + maxRenderTimeMillis + " ms.)");
+    }
+}
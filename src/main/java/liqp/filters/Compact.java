@@ -14,10 +14,9 @@ public class Compact extends Filter {
             return value;
         }
 
-        Object[] values = super.asArray(value, context);
         List<Object> compacted = new ArrayList<Object>();
 
-        for (Object obj : values) {
+        for (Object obj : super.asList(value, context)) {
             if (obj != null) {
                 compacted.add(obj);
             }
@@ -11,6 +11,8 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static liqp.filters.date.Parser.datePatterns;
 
@@ -18,6 +20,12 @@ import static liqp.filters.date.Parser.datePatterns;
 // https://shopify.github.io/liquid/filters/date/
 public class Date extends Filter {
 
+    private static final int MAX_CACHED_LOCALES = 16;
+    private static final int MAX_CACHED_FORMATS = 256;
+
+    // the formatters per locale and format
+    private static final Map<Locale, Map<String, StrftimeFormatter>> FORMATTERS = new ConcurrentHashMap<>();
+
     protected Date() {
         super();
     }
@@ -38,7 +46,7 @@ public class Date extends Filter {
         try {
             final ZonedDateTime compatibleDate;
             if ("now".equals(super.asString(value, context)) || "today".equals(super.asString(value, context))) {
-                compatibleDate = ZonedDateTime.now();
+                compatibleDate = context.now();
             } else if (LValue.isTemporal(value)) {
                 compatibleDate = LValue.asTemporal(value, context);
             } else if(super.isNumber(value)) {
@@ -58,14 +66,36 @@ public class Date extends Filter {
                 return value;
             }
 
-            StrftimeFormatter formatter = StrftimeFormatter.ofSafePattern(format, locale);
-            return formatter.format(compatibleDate);
+            return getFormatter(format, locale).format(compatibleDate);
         }
         catch (Exception e) {
             return value;
         }
     }
 
+    /**
+     * Returns the (cached) formatter of the given strftime format. The formats are nearly always
+     * literals in the templates, so the cache is simply cleared in the rare case it fills up.
+     */
+    static StrftimeFormatter getFormatter(String format, Locale locale) {
+        Map<String, StrftimeFormatter> formatters = FORMATTERS.get(locale);
+        if (formatters == null) {
+            if (FORMATTERS.size() >= MAX_CACHED_LOCALES) {
+                FORMATTERS.clear();
+            }
+            formatters = FORMATTERS.computeIfAbsent(locale, l -> new ConcurrentHashMap<>());
+        }
+        StrftimeFormatter formatter = formatters.get(format);
+        if (formatter == null) {
+            if (formatters.size() >= MAX_CACHED_FORMATS) {
+                formatters.clear();
+            }
+            formatter = StrftimeFormatter.ofSafePattern(format, locale);
+            formatters.put(format, formatter);
+        }
+        return formatter;
+    }
+
     /**
      * Adds a new Date-pattern to be used when parsing a string to a Date.
      *
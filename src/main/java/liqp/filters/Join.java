@@ -3,6 +3,8 @@ package liqp.filters;
 import liqp.RenderTransformer.ObjectAppender;
 import liqp.TemplateContext;
 
+import java.util.List;
+
 public class Join extends Filter {
 
     /*
@@ -17,20 +19,21 @@ public class Join extends Filter {
             return "";
         }
 
-        Object[] array = super.asArray(value, context);
-        if (array.length == 0) {
+        List<?> list = super.asList(value, context);
+        if (list.isEmpty()) {
             return "";
         }
 
-        ObjectAppender.Controller builder = context.newObjectAppender(array.length);
+        ObjectAppender.Controller builder = context.newObjectAppender(list.size());
         String glue = params.length == 0 ? " " : super.asString(super.get(0, params), context);
 
-        for (int i = 0; i < array.length; i++) {
-            builder.append(super.asAppendableObject(array[i], context));
-
-            if (i < array.length - 1) {
+        boolean first = true;
+        for (Object item : list) {
+            if (!first) {
                 builder.append(glue);
             }
+            builder.append(super.asAppendableObject(item, context));
+            first = false;
         }
 
         return builder.getResult();
@@ -1,6 +1,9 @@
 package liqp.filters;
 
 import liqp.TemplateContext;
+import liqp.query.Query;
+
+import java.util.List;
 
 public class Last extends Filter {
 
@@ -12,8 +15,13 @@ public class Last extends Filter {
     @Override
     public Object apply(Object value, TemplateContext context, Object... params) {
 
-        Object[] array = super.asArray(value, context);
+        Query query = Query.from(value);
+        if (query != null) {
+            return query.last();
+        }
+
+        List<?> list = super.asList(value, context);
 
-        return array.length == 0 ? null : array[array.length - 1];
+        return list.isEmpty() ? null : list.get(list.size() - 1);
     }
 }
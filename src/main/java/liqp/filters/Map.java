@@ -3,6 +3,8 @@ package liqp.filters;
 import liqp.TemplateContext;
 import liqp.parser.Inspectable;
 import liqp.parser.LiquidSupport;
+import liqp.parser.PropertyAccessors;
+import liqp.query.Query;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -21,24 +23,34 @@ public class Map extends Filter {
             return "";
         }
 
-        List<Object> list = new ArrayList<Object>();
+        String key = super.asString(super.get(0, params), context);
 
-        Object[] array = super.asArray(value, context);
+        // describe the projection to a queryable collection, rather than mapping its items here
+        Query query = Query.from(value);
+        if (query != null) {
+            Query mapped = query.map(key);
+            if (mapped != null) {
+                return mapped;
+            }
+            value = query.fetch();
+        }
 
-        String key = super.asString(super.get(0, params), context);
+        List<Object> list = new ArrayList<Object>();
 
-        for (Object obj : array) {
+        for (Object obj : super.asList(value, context)) {
 
-            java.util.Map map;
-            if (value instanceof Inspectable) {
-                LiquidSupport evaluated = context.renderSettings.evaluate(context.parseSettings.mapper, value);
-                map = evaluated.toLiquid();
+            Object val;
+            if (obj instanceof Inspectable) {
+                val = obj instanceof LiquidSupport ? PropertyAccessors.UNRESOLVED
+                        : context.getParseSettings().getPropertyAccessors().get(obj, key);
+                if (val == PropertyAccessors.UNRESOLVED) {
+                    LiquidSupport evaluated = context.evaluate(obj);
+                    val = evaluated.toLiquid().get(key);
+                }
             } else {
-                map = (java.util.Map) obj;
+                val = ((java.util.Map) obj).get(key);
             }
 
-            Object val = map.get(key);
-
             if (val != null) {
                 list.add(val);
             }
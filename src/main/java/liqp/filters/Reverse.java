@@ -3,7 +3,6 @@ package liqp.filters;
 import liqp.TemplateContext;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -16,8 +15,7 @@ public class Reverse extends Filter {
             return value;
         }
 
-        Object[] values = super.asArray(value, context);
-        List<Object> list = new ArrayList<Object>(Arrays.asList(values));
+        List<Object> list = new ArrayList<Object>(super.asList(value, context));
 
         Collections.reverse(list);
 
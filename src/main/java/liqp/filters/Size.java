@@ -2,7 +2,11 @@ package liqp.filters;
 
 import liqp.TemplateContext;
 import liqp.parser.Inspectable;
+import liqp.parser.LiquidSequence;
 import liqp.parser.LiquidSupport;
+import liqp.query.Query;
+
+import java.util.Collection;
 
 public class Size extends Filter {
 
@@ -14,14 +18,25 @@ public class Size extends Filter {
     @Override
     public Object apply(Object value, TemplateContext context, Object... params) {
 
+        Query query = Query.from(value);
+        if (query != null) {
+            return query.count();
+        }
+
         if (value instanceof Inspectable) {
-            LiquidSupport evaluated = context.getRenderSettings().evaluate(context.getParseSettings().mapper, value);
+            LiquidSupport evaluated = context.evaluate(value);
             value = evaluated.toLiquid();
         }
 
         if (isMap(value)) {
             return asMap(value).size();
         }
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).size();
+        }
+        if (value instanceof LiquidSequence && ((LiquidSequence<?>) value).size() >= 0) {
+            return ((LiquidSequence<?>) value).size();
+        }
         if (super.isArray(value)) {
             return super.asArray(value, context).length;
         }
@@ -11,6 +11,7 @@ import java.util.Map.Entry;
 import liqp.TemplateContext;
 import liqp.parser.Inspectable;
 import liqp.parser.LiquidSupport;
+import liqp.query.Query;
 
 public class Sort extends Filter {
 
@@ -29,6 +30,16 @@ public class Sort extends Filter {
         }
         String property = params.length == 0 ? null : super.asString(params[0], context);
 
+        // describe the order to a queryable collection, rather than sorting its items here
+        Query query = Query.from(value);
+        if (query != null) {
+            Query sorted = query.sort(property);
+            if (sorted != null) {
+                return sorted;
+            }
+            value = query.fetch();
+        }
+
         Object[] array;
         boolean wasMap = false;
         if (value instanceof java.util.Map) {
@@ -114,8 +125,7 @@ public class Sort extends Filter {
         for (Object obj : array) {
 
             if (property != null && obj instanceof Inspectable) {
-                LiquidSupport evaluated = context.renderSettings.evaluate(context.parseSettings.mapper,
-                    obj);
+                LiquidSupport evaluated = context.evaluate(obj);
                 obj = evaluated.toLiquid();
             }
             if (obj instanceof java.util.Map && property != null) {
@@ -13,8 +13,7 @@ public class Sort_Natural extends Filter {
             return value;
         }
 
-        Object[] array = super.asArray(value, context);
-        List<Object> list = new ArrayList<Object>(Arrays.asList(array));
+        List<Object> list = new ArrayList<Object>(super.asList(value, context));
 
         Collections.sort(list, new Comparator() {
             @Override
@@ -2,7 +2,6 @@ package liqp.filters;
 
 import liqp.TemplateContext;
 
-import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
@@ -15,7 +14,7 @@ public class Uniq extends Filter {
             return value;
         }
 
-        Set<Object> set = new LinkedHashSet<Object>(Arrays.asList(super.asArray(value, context)));
+        Set<Object> set = new LinkedHashSet<Object>(super.asList(value, context));
 
         return set.toArray();
     }
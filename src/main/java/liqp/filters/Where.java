@@ -6,6 +6,7 @@ import liqp.filters.where.LiquidWhereImpl;
 import liqp.filters.where.PropertyResolverHelper;
 import liqp.filters.where.WhereImpl;
 import liqp.parser.Flavor;
+import liqp.query.Query;
 
 /**
  * There are two different implementations of this filter in ruby.
@@ -37,8 +38,21 @@ public class Where extends Filter {
             delegate = new JekyllWhereImpl(context, PropertyResolverHelper.INSTANCE);
         } else {
             checkParams(params, 1, 2);
+
+            // describe the condition to a queryable collection, rather than checking its items here
+            Query query = Query.from(value);
+            if (query != null) {
+                String property = super.asString(params[0], context);
+                Query where = params.length == 1 ? query.where(property) : query.where(property, params[1]);
+                if (where != null) {
+                    return where;
+                }
+            }
             delegate = new LiquidWhereImpl(context, PropertyResolverHelper.INSTANCE);
         }
+        if (super.isSequence(value)) {
+            value = super.asList(value, context);
+        }
         return delegate.apply(value, params);
     }
 
@@ -1,7 +1,8 @@
 package liqp.filters;
 
-import liqp.Template;
+import liqp.RenderSettings;
 import liqp.TemplateContext;
+import liqp.nodes.LNode;
 import liqp.parser.Inspectable;
 import liqp.parser.LiquidSupport;
 
@@ -44,7 +45,7 @@ public class Where_Exp extends Filter {
         }
 
         if (items == null && value instanceof Inspectable) {
-            LiquidSupport evaluated = context.renderSettings.evaluate(context.parseSettings.mapper, value);
+            LiquidSupport evaluated = context.evaluate(value);
             value = evaluated.toLiquid();
         }
         if (isMap(value)) {
@@ -58,19 +59,26 @@ public class Where_Exp extends Filter {
         String varName = asString(params[0], context);
         String strExpression = asString(params[1], context);
 
-        Template expression = context.getParser().parse("{{ " + strExpression + " }}");
+        LNode condition = context.getParser().parseExpression(strExpression);
+
+        // a single scope for all items, its parent provides the other variables
+        TemplateContext scope = new TemplateContext(context);
+        boolean eager = context.renderSettings.evaluateMode == RenderSettings.EvaluateMode.EAGER;
 
         List<Object> res = new ArrayList<>();
         for (Object item: items) {
-            if (matchCondition(context, item, varName, expression)) {
+            if (eager) {
+                scope.put(varName, context.renderSettings.evaluate(context.parseSettings.mapper,
+                        Collections.singletonMap(varName, item)).get(varName));
+            } else {
+                scope.put(varName, item);
+            }
+            // matched on the rendered value, so that an expression yielding the string "true" matches too
+            Object matched = condition.render(scope);
+            if (matched == Boolean.TRUE || "true".equals(matched)) {
                 res.add(item);
             }
         }
         return res;
     }
-
-    private boolean matchCondition(TemplateContext context, Object item, String varName, Template expression) {
-        String res = expression.renderUnguarded(Collections.singletonMap(varName, item), context, false);
-        return "true".equals(res);
-    }
 }
@@ -1,16 +1,29 @@
 package liqp.filters.date;
 
+import java.text.ParsePosition;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Month;
+import java.time.OffsetDateTime;
+import java.time.Year;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.time.temporal.TemporalAccessor;
 import java.time.temporal.TemporalField;
 import java.time.temporal.TemporalQueries;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static java.time.temporal.ChronoField.DAY_OF_MONTH;
 import static java.time.temporal.ChronoField.HOUR_OF_DAY;
@@ -34,7 +47,7 @@ public class Parser {
      * Just an example how it is violating standard in details regarding timezone representation:
      * https://docs.python.org/3/library/datetime.html#strftime-and-strptime-behavior
      */
-    public static List<String> datePatterns = new ArrayList<>();
+    public static List<String> datePatterns = new DatePatterns();
 
     static {
         datePatterns.add("yyyy-MM-dd HH:mm:ss");
@@ -61,17 +74,26 @@ public class Parser {
         datePatterns.add("dd-MM-yyyy");
     }
 
-    public static ZonedDateTime parse(String str, Locale locale, ZoneId defaultZone) {
+    // the formatters of the current datePatterns, per locale; the patterns are compiled again when the
+    // list changes (as told by its version), or when another list is assigned to datePatterns
+    private static final Map<Locale, CompiledPatterns> compiledPatterns = new ConcurrentHashMap<>();
 
-        for(String pattern : datePatterns) {
-            try {
+    public static ZonedDateTime parse(String str, Locale locale, ZoneId defaultZone) {
 
-                DateTimeFormatter timeFormatter = new DateTimeFormatterBuilder()
-                        .parseCaseInsensitive()
-                        .appendPattern(pattern)
-                        .toFormatter(locale);
+        TemporalAccessor temporalAccessor = parseIso(str);
+        if (temporalAccessor != null) {
+            return getZonedDateTimeFromTemporalAccessor(temporalAccessor, defaultZone);
+        }
 
-                TemporalAccessor temporalAccessor = timeFormatter.parse(str);
+        for (DateTimeFormatter timeFormatter : getCompiledPatterns(locale).formatters) {
+            // a cheap check that the whole string matches, before resolving it (which may throw)
+            ParsePosition position = new ParsePosition(0);
+            if (timeFormatter.parseUnresolved(str, position) == null || position.getErrorIndex() >= 0
+                    || position.getIndex() != str.length()) {
+                continue;
+            }
+            try {
+                temporalAccessor = timeFormatter.parse(str);
                 return getZonedDateTimeFromTemporalAccessor(temporalAccessor, defaultZone);
             } catch (Exception e) {
                 // ignore
@@ -82,6 +104,198 @@ public class Parser {
         return null;
     }
 
+    private static CompiledPatterns getCompiledPatterns(Locale locale) {
+        List<String> patterns = datePatterns;
+        // a list assigned by the user has no version, its patterns are compared instead
+        long version = patterns instanceof DatePatterns ? ((DatePatterns) patterns).version : -1;
+        CompiledPatterns compiled = compiledPatterns.get(locale);
+        if (compiled == null || !compiled.isOf(patterns, version)) {
+            compiled = new CompiledPatterns(patterns, version, patterns.toArray(new String[0]), locale);
+            compiledPatterns.put(locale, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Parses the common ISO-8601 forms {@code yyyy-MM-dd}, and {@code yyyy-MM-dd'T'HH:mm[:ss[.S]]}
+     * optionally followed by an offset such as {@code Z} or {@code +01:00}, where a space may take the
+     * place of the {@code T}. Returns null for anything else, which is left to the datePatterns.
+     */
+    static TemporalAccessor parseIso(String str) {
+        int length = str.length();
+        if (length < 10 || str.charAt(4) != '-' || str.charAt(7) != '-') {
+            return null;
+        }
+        int year = digits(str, 0, 4);
+        int month = digits(str, 5, 2);
+        int day = digits(str, 8, 2);
+        if (year < 1 || month < 1 || month > 12 || day < 1
+                || day > Month.of(month).length(Year.isLeap(year))) {
+            return null;
+        }
+        LocalDate date = LocalDate.of(year, month, day);
+        if (length == 10) {
+            return date;
+        }
+
+        char separator = str.charAt(10);
+        if ((separator != 'T' && separator != ' ') || length < 16 || str.charAt(13) != ':') {
+            return null;
+        }
+        int hour = digits(str, 11, 2);
+        int minute = digits(str, 14, 2);
+        int second = 0;
+        int nano = 0;
+        int index = 16;
+        if (index < length && str.charAt(index) == ':') {
+            second = digits(str, index + 1, 2);
+            index += 3;
+            if (index < length && str.charAt(index) == '.') {
+                int start = ++index;
+                while (index < length && index - start < 9 && isDigit(str.charAt(index))) {
+                    nano = nano * 10 + (str.charAt(index++) - '0');
+                }
+                if (index == start) {
+                    return null;
+                }
+                for (int i = index - start; i < 9; i++) {
+                    nano *= 10;
+                }
+            }
+        }
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+        LocalDateTime dateTime = LocalDateTime.of(date, LocalTime.of(hour, minute, second, nano));
+        if (index == length) {
+            return dateTime;
+        }
+
+        ZoneOffset offset = parseOffset(str, index);
+        return offset == null ? null : OffsetDateTime.of(dateTime, offset);
+    }
+
+    // Z, +HH, +HHmm or +HH:mm, up to the end of the string
+    private static ZoneOffset parseOffset(String str, int index) {
+        int length = str.length() - index;
+        char sign = str.charAt(index);
+        if (sign == 'Z' && length == 1) {
+            return ZoneOffset.UTC;
+        }
+        if ((sign != '+' && sign != '-') || (length != 3 && length != 5 && length != 6)) {
+            return null;
+        }
+        int hours = digits(str, index + 1, 2);
+        int minutes = 0;
+        if (length == 5) {
+            minutes = digits(str, index + 3, 2);
+        } else if (length == 6) {
+            minutes = str.charAt(index + 3) == ':' ? digits(str, index + 4, 2) : -1;
+        }
+        if (hours < 0 || minutes < 0 || minutes > 59 || hours * 60 + minutes > 18 * 60) {
+            return null;
+        }
+        return sign == '+' ? ZoneOffset.ofHoursMinutes(hours, minutes)
+                : ZoneOffset.ofHoursMinutes(-hours, -minutes);
+    }
+
+    // the value of the count digits at index, or -1 if these are not all digits
+    private static int digits(String str, int index, int count) {
+        if (index + count > str.length()) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = index; i < index + count; i++) {
+            char c = str.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static final class CompiledPatterns {
+        private final List<String> source;
+        private final long version;
+        private final List<String> patterns;
+        private final List<DateTimeFormatter> formatters;
+
+        CompiledPatterns(List<String> source, long version, String[] patterns, Locale locale) {
+            this.source = source;
+            this.version = version;
+            this.patterns = Arrays.asList(patterns);
+            List<DateTimeFormatter> formatters = new ArrayList<>(patterns.length);
+            for (String pattern : patterns) {
+                try {
+                    formatters.add(new DateTimeFormatterBuilder()
+                            .parseCaseInsensitive()
+                            .appendPattern(pattern)
+                            .toFormatter(locale));
+                } catch (IllegalArgumentException e) {
+                    // an invalid pattern never matches
+                }
+            }
+            this.formatters = Collections.unmodifiableList(formatters);
+        }
+
+        boolean isOf(List<String> patterns, long version) {
+            return source == patterns && (version >= 0 ? this.version == version : this.patterns.equals(patterns));
+        }
+    }
+
+    /**
+     * A thread-safe list of patterns, that keeps a version which changes with every modification.
+     */
+    private static final class DatePatterns extends AbstractList<String> {
+        private final List<String> patterns = new CopyOnWriteArrayList<>();
+        private volatile long version;
+
+        @Override
+        public String get(int index) {
+            return patterns.get(index);
+        }
+
+        @Override
+        public int size() {
+            return patterns.size();
+        }
+
+        @Override
+        public Object[] toArray() {
+            return patterns.toArray();
+        }
+
+        @Override
+        public <T> T[] toArray(T[] a) {
+            return patterns.toArray(a);
+        }
+
+        @Override
+        public synchronized void add(int index, String pattern) {
+            patterns.add(index, pattern);
+            version++;
+        }
+
+        @Override
+        public synchronized String set(int index, String pattern) {
+            String previous = patterns.set(index, pattern);
+            version++;
+            return previous;
+        }
+
+        @Override
+        public synchronized String remove(int index) {
+            String previous = patterns.remove(index);
+            version++;
+            return previous;
+        }
+    }
+
     /**
      * Follow ruby rules: if some datetime part is missing,
      * the default is taken from `now` with default zone
@@ -4,6 +4,7 @@ import liqp.LValue;
 import liqp.TemplateContext;
 import liqp.parser.Inspectable;
 import liqp.parser.LiquidSupport;
+import liqp.parser.PropertyAccessors;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -21,8 +22,15 @@ public class PropertyResolverHelper {
             private final LValue lValue = new LValue() {};
             @Override
             public Object getItemProperty(TemplateContext context, Object input, Object property) {
-                LiquidSupport evaluated = context.renderSettings.evaluate(context.parseSettings.mapper, input);
-                return evaluated.toLiquid().get(lValue.asString(property, context));
+                String name = lValue.asString(property, context);
+                if (!(input instanceof LiquidSupport)) {
+                    Object value = context.getParseSettings().getPropertyAccessors().get(input, name);
+                    if (value != PropertyAccessors.UNRESOLVED) {
+                        return value;
+                    }
+                }
+                LiquidSupport evaluated = context.evaluate(input);
+                return evaluated.toLiquid().get(name);
             }
 
             @Override
@@ -0,0 +1,58 @@
+package liqp.loaders;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import liqp.TemplateLoader;
+
+/**
+ * Loads templates from the resources of a {@link ClassLoader}, under a common prefix such as
+ * {@code "templates/"}. Resources are not expected to change, so all of them share the same version
+ * stamp.
+ */
+public class ClasspathTemplateLoader implements TemplateLoader {
+
+    private final ClassLoader classLoader;
+    private final String prefix;
+    private final Charset charset;
+
+    public ClasspathTemplateLoader(String prefix) {
+        this(ClasspathTemplateLoader.class.getClassLoader(), prefix, StandardCharsets.UTF_8);
+    }
+
+    public ClasspathTemplateLoader(ClassLoader classLoader, String prefix, Charset charset) {
+        this.classLoader = classLoader;
+        this.prefix = prefix.isEmpty() || prefix.endsWith("/") ? prefix : prefix + "/";
+        this.charset = charset;
+    }
+
+    @Override
+    public String load(String name) throws IOException {
+        String resource = prefix + name;
+        try (InputStream in = classLoader.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new FileNotFoundException("no resource named: " + resource);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) != -1;) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), charset);
+        }
+    }
+
+    @Override
+    public String getId(String name) {
+        return "classpath:" + prefix + name;
+    }
+
+    @Override
+    public long getVersion(String name) {
+        return 1L;
+    }
+}
@@ -0,0 +1,69 @@
+package liqp.loaders;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import liqp.TemplateLoader;
+
+/**
+ * Loads templates from the files in a directory. Files are read by mapping them into memory, and
+ * their version stamp is derived from their modification time and length: a change that keeps both
+ * the same is not noticed.
+ */
+public class FileSystemTemplateLoader implements TemplateLoader {
+
+    private final File directory;
+    private final Charset charset;
+
+    public FileSystemTemplateLoader(File directory) {
+        this(directory, StandardCharsets.UTF_8);
+    }
+
+    public FileSystemTemplateLoader(File directory, Charset charset) {
+        this.directory = directory;
+        this.charset = charset;
+    }
+
+    public File getFile(String name) {
+        return new File(directory, name).getAbsoluteFile();
+    }
+
+    @Override
+    public String load(String name) throws IOException {
+        try (FileChannel channel = FileChannel.open(getFile(name).toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return "";
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return charset.decode(buffer).toString();
+        }
+    }
+
+    @Override
+    public String getId(String name) {
+        return getFile(name).getPath();
+    }
+
+    @Override
+    public long getVersion(String name) {
+        File file = getFile(name);
+        // mixed rather than summed, so that an older but longer file does not get the same stamp
+        return mix(mix(file.lastModified()) + file.length());
+    }
+
+    // the finalizer of MurmurHash3, a bijection that spreads every bit over the whole long
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
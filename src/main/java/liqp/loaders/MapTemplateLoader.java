@@ -0,0 +1,75 @@
+package liqp.loaders;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import liqp.TemplateLoader;
+
+/**
+ * Loads templates from memory. Templates can be added and replaced at any time; each change gets a
+ * new version stamp.
+ */
+public class MapTemplateLoader implements TemplateLoader {
+
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    private static final AtomicLong IDS = new AtomicLong();
+
+    private final String id = "memory@" + IDS.incrementAndGet() + ":";
+    private final Map<String, Source> sources = new ConcurrentHashMap<>();
+
+    public MapTemplateLoader() {
+    }
+
+    public MapTemplateLoader(Map<String, String> sources) {
+        for (Map.Entry<String, String> entry : sources.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Adds or replaces the template with the given name.
+     */
+    public void put(String name, String source) {
+        sources.put(name, new Source(source, VERSIONS.incrementAndGet()));
+    }
+
+    /**
+     * Removes the template with the given name.
+     */
+    public void remove(String name) {
+        sources.remove(name);
+    }
+
+    @Override
+    public String load(String name) throws IOException {
+        Source source = sources.get(name);
+        if (source == null) {
+            throw new FileNotFoundException("no template named: " + name);
+        }
+        return source.source;
+    }
+
+    @Override
+    public String getId(String name) {
+        return id + name;
+    }
+
+    @Override
+    public long getVersion(String name) {
+        Source source = sources.get(name);
+        return source == null ? 0L : source.version;
+    }
+
+    private static final class Source {
+        private final String source;
+        private final long version;
+
+        Source(String source, long version) {
+            this.source = source;
+            this.version = version;
+        }
+    }
+}
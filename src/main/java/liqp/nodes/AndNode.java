@@ -7,8 +7,8 @@ import java.util.Map;
 
 public class AndNode extends LValue implements LNode {
 
-    private LNode lhs;
-    private LNode rhs;
+    LNode lhs;
+    LNode rhs;
 
     public AndNode(LNode lhs, LNode rhs) {
         this.lhs = lhs;
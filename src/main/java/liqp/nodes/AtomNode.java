@@ -1,5 +1,6 @@
 package liqp.nodes;
 
+import liqp.LValue;
 import liqp.TemplateContext;
 
 public class AtomNode implements LNode {
@@ -36,4 +37,9 @@ public class AtomNode implements LNode {
 
         return value;
     }
+
+    @Override
+    public boolean mayInterrupt() {
+        return value == LValue.BREAK || value == LValue.CONTINUE;
+    }
 }
@@ -4,8 +4,8 @@ import liqp.TemplateContext;
 
 public class AttributeNode implements LNode {
 
-    private LNode key;
-    private LNode value;
+    final LNode key;
+    final LNode value;
 
     public AttributeNode(LNode key, LNode value) {
         this.key = key;
@@ -12,12 +12,16 @@ import java.util.List;
 
 import liqp.RenderTransformer.ObjectAppender;
 import liqp.TemplateContext;
+import liqp.parser.LiquidSequence;
 
 public class BlockNode implements LNode {
 
     private List<LNode> children;
     private final boolean isRootBlock;
 
+    // 0: unknown, 1: may be interrupted, 2: cannot be interrupted
+    private int interruptible;
+
     public BlockNode() {
         this(false);
     }
@@ -29,16 +33,24 @@ public class BlockNode implements LNode {
 
     public void add(LNode node) {
         children.add(node);
+        interruptible = 0;
     }
 
     public List<LNode> getChildren() {
         return new ArrayList<LNode>(children);
     }
 
+    // replaces the children, see TreeOptimizer
+    void setChildren(List<LNode> children) {
+        this.children = children;
+        interruptible = 0;
+    }
+
     @Override
     public Object render(TemplateContext context) {
         ObjectAppender.Controller builder = context.newObjectAppender(children.size());
         for (LNode node : children) {
+            context.checkRenderTime();
             Object value = node.render(context);
             if (value == null) {
                 continue;
@@ -46,28 +58,78 @@ public class BlockNode implements LNode {
 
             if (value == BREAK || value == CONTINUE) {
                 return value;
-            } else if (value instanceof List) {
+            }
+            append(value, context, builder);
+        }
 
-                List<?> list = (List<?>) value;
+        return builder.getResult();
+    }
 
-                for (Object obj : list) {
-                    builder.append(postprocess(obj, context));
-                }
-            } else if (value.getClass().isArray()) {
+    /**
+     * Streams the children of this block into the given appender. A block that may be
+     * interrupted by a {@code break} or {@code continue} drops its partial output, which
+     * requires it to be buffered; such a block is rendered by {@link #render(TemplateContext)}.
+     */
+    @Override
+    public Object renderTo(TemplateContext context, ObjectAppender appender) {
+        if (mayInterrupt()) {
+            return render(context);
+        }
 
-                Object[] array = (Object[]) value;
-                for (Object obj : array) {
-                    builder.append(postprocess(obj, context));
-                }
-            } else {
-                builder.append(postprocess(value, context));
+        for (LNode node : children) {
+            context.checkRenderTime();
+            Object value = node.renderTo(context, appender);
+            if (value == null) {
+                continue;
             }
+            append(value, context, appender);
         }
 
-        return builder.getResult();
+        return null;
+    }
+
+    // appends the rendered value of a child, item by item for lists, arrays and sequences
+    static void append(Object value, TemplateContext context, ObjectAppender appender) {
+        if (value instanceof List) {
+
+            List<?> list = (List<?>) value;
+
+            for (Object obj : list) {
+                appender.append(postprocess(obj, context));
+            }
+        } else if (value.getClass().isArray()) {
+
+            Object[] array = (Object[]) value;
+            for (Object obj : array) {
+                appender.append(postprocess(obj, context));
+            }
+        } else if (value instanceof LiquidSequence) {
+
+            for (Object obj : (LiquidSequence<?>) value) {
+                appender.append(postprocess(obj, context));
+            }
+        } else {
+            appender.append(postprocess(value, context));
+        }
+    }
+
+    @Override
+    public boolean mayInterrupt() {
+        int state = interruptible;
+        if (state == 0) {
+            state = 2;
+            for (LNode node : children) {
+                if (node.mayInterrupt()) {
+                    state = 1;
+                    break;
+                }
+            }
+            interruptible = state;
+        }
+        return state == 1;
     }
 
-    private Object postprocess(Object value, TemplateContext context) {
+    private static Object postprocess(Object value, TemplateContext context) {
         if (isTemporal(value)) {
             ZonedDateTime time = asTemporal(value, context);
             return rubyDateTimeFormat.format(time);
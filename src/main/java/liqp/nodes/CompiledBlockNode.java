@@ -0,0 +1,98 @@
+package liqp.nodes;
+
+import static liqp.LValue.BREAK;
+import static liqp.LValue.CONTINUE;
+
+import java.util.List;
+
+import liqp.LValue;
+import liqp.RenderTransformer.ObjectAppender;
+import liqp.TemplateContext;
+
+/**
+ * A {@link BlockNode} whose children are rendered by a method that {@link TemplateCompiler} generated
+ * for it in the {@link CompiledBlocks} of its template, instead of by walking them. It renders the
+ * same as the block it was compiled from, whose children it keeps for the tags that read them.
+ * <p/>
+ * This class is public so that the generated classes, which are loaded by their own class loader, can
+ * call it.
+ */
+public final class CompiledBlockNode extends BlockNode {
+
+    private static final LValue VALUES = new LValue() {
+    };
+
+    private final int block;
+    private final int childCount;
+
+    // set once the class of the template is generated, before the tree is rendered
+    private CompiledBlocks code;
+
+    CompiledBlockNode(BlockNode source, int block) {
+        List<LNode> children = source.getChildren();
+        setChildren(children);
+        this.block = block;
+        this.childCount = children.size();
+    }
+
+    void setCode(CompiledBlocks code) {
+        this.code = code;
+    }
+
+    CompiledBlocks getCode() {
+        return code;
+    }
+
+    @Override
+    public Object render(TemplateContext context) {
+        ObjectAppender.Controller builder = context.newObjectAppender(childCount);
+        Object interrupted = code.renderChildren(block, context, builder, false);
+        return interrupted != null ? interrupted : builder.getResult();
+    }
+
+    @Override
+    public Object renderTo(TemplateContext context, ObjectAppender appender) {
+        if (mayInterrupt()) {
+            return render(context);
+        }
+        return code.renderChildren(block, context, appender, true);
+    }
+
+    /**
+     * Renders the children as the body of a {@code for} loop: unlike a block, the output of the
+     * children before a {@code break} or {@code continue} is kept.
+     *
+     * @return {@link LValue#BREAK} or {@link LValue#CONTINUE} when a child was interrupted, and
+     *         {@code null} otherwise.
+     */
+    public Object renderLoopBody(TemplateContext context, ObjectAppender appender, boolean streaming) {
+        return code.renderLoopBody(block, context, appender, streaming);
+    }
+
+    /**
+     * Appends the rendered value of a child of a block, see {@link CompiledBlocks#renderChildren}.
+     */
+    public static void appendBlockValue(Object value, TemplateContext context, ObjectAppender appender) {
+        append(value, context, appender);
+    }
+
+    /**
+     * Appends the rendered value of a child of a loop body, see {@link #renderLoopBody}.
+     */
+    public static void appendLoopValue(Object value, TemplateContext context, ObjectAppender appender) {
+        if (VALUES.isArray(value)) {
+            for (Object obj : VALUES.asList(value, context)) {
+                appender.append(obj);
+            }
+        } else {
+            appender.append(VALUES.asAppendableObject(value, context));
+        }
+    }
+
+    /**
+     * Returns true iff the given value of a child interrupts the rendering.
+     */
+    public static boolean isInterrupt(Object value) {
+        return value == BREAK || value == CONTINUE;
+    }
+}
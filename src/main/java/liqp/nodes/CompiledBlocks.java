@@ -0,0 +1,37 @@
+package liqp.nodes;
+
+import liqp.RenderTransformer.ObjectAppender;
+import liqp.TemplateContext;
+
+/**
+ * The code that {@link TemplateCompiler} generates for the blocks of a single template: one class per
+ * template, with a method for each of its blocks, which the {@link CompiledBlockNode}s of the template
+ * call by the number of their block.
+ * <p/>
+ * This class is public so that the generated classes, which are loaded by their own class loader, can
+ * extend it; it is not meant to be extended otherwise.
+ */
+public abstract class CompiledBlocks {
+
+    protected CompiledBlocks() {
+    }
+
+    /**
+     * Renders the children of the given block, see {@link CompiledBlockNode#render(TemplateContext)}.
+     *
+     * @return {@link liqp.LValue#BREAK} or {@link liqp.LValue#CONTINUE} when a child was interrupted,
+     *         and {@code null} otherwise.
+     */
+    public abstract Object renderChildren(int block, TemplateContext context, ObjectAppender appender,
+            boolean streaming);
+
+    /**
+     * Renders the children of the given block as the body of a {@code for} loop, see
+     * {@link CompiledBlockNode#renderLoopBody(TemplateContext, ObjectAppender, boolean)}.
+     *
+     * @return {@link liqp.LValue#BREAK} or {@link liqp.LValue#CONTINUE} when a child was interrupted,
+     *         and {@code null} otherwise.
+     */
+    public abstract Object renderLoopBody(int block, TemplateContext context, ObjectAppender appender,
+            boolean streaming);
+}
@@ -12,8 +12,8 @@ import java.util.List;
 
 public class ContainsNode extends LValue implements LNode {
 
-    private LNode lhs;
-    private LNode rhs;
+    LNode lhs;
+    LNode rhs;
 
     public ContainsNode(LNode lhs, LNode rhs) {
         this.lhs = lhs;
@@ -27,7 +27,7 @@ public class ContainsNode extends LValue implements LNode {
         Object needle = rhs.render(context);
 
         if (collection instanceof Inspectable) {
-            LiquidSupport evaluated = context.renderSettings.evaluate(context.parseSettings.mapper, collection);
+            LiquidSupport evaluated = context.evaluate(collection);
             collection = evaluated.toLiquid();
         }
 
@@ -7,8 +7,8 @@ import java.util.Map;
 
 public class EqNode implements LNode {
 
-    private LNode lhs;
-    private LNode rhs;
+    LNode lhs;
+    LNode rhs;
 
     public EqNode(LNode lhs, LNode rhs) {
         this.lhs = lhs;
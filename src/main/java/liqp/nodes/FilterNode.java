@@ -10,22 +10,17 @@ import java.util.List;
 
 public class FilterNode implements LNode {
 
-    private final int line;
-    private final int tokenStartIndex;
-    private final String text;
-    private final Filter filter;
-    private final List<LNode> params;
+    final int line;
+    final int tokenStartIndex;
+    final String text;
+    final Filter filter;
+    final List<LNode> params;
 
     public FilterNode(ParserRuleContext context, Filter filter) {
         this(context.start.getLine(), context.start.getCharPositionInLine(), context.getText(), filter);
     }
 
-    private FilterNode(int line, int tokenStartIndex, String text, Filter filter) {
-
-        if (filter == null) {
-            throw new IllegalArgumentException("error on line " + line + ", index " + tokenStartIndex + ": no filter available named: " + text);
-        }
-
+    FilterNode(int line, int tokenStartIndex, String text, Filter filter) {
         this.line = line;
         this.tokenStartIndex = tokenStartIndex;
         this.text = text;
@@ -39,6 +34,12 @@ public class FilterNode implements LNode {
 
     public Object apply(Object value, TemplateContext context) {
 
+        // The node tree is built when the template is parsed, but an unknown filter is only reported
+        // once it is actually used, as it was before templates were compiled once.
+        if (filter == null) {
+            throw new IllegalArgumentException("error on line " + line + ", index " + tokenStartIndex + ": no filter available named: " + text);
+        }
+
         try {
             List<Object> paramValues = new ArrayList<Object>();
 
@@ -2,13 +2,14 @@ package liqp.nodes;
 
 import liqp.TemplateContext;
 import liqp.Insertion;
+import liqp.RenderTransformer.ObjectAppender;
 
 import java.util.List;
 
 public class InsertionNode implements LNode {
 
-    private Insertion insertion;
-    private LNode[] tokens;
+    final Insertion insertion;
+    final LNode[] tokens;
 
     public InsertionNode(Insertion insertion, List<LNode> tokens) {
         this(insertion.name, insertion, tokens.toArray(new LNode[tokens.size()]));
@@ -33,4 +34,14 @@ public class InsertionNode implements LNode {
     public Object render(TemplateContext context) {
         return insertion.render(context, tokens);
     }
+
+    @Override
+    public Object renderTo(TemplateContext context, ObjectAppender appender) {
+        return insertion.renderTo(context, appender, tokens);
+    }
+
+    @Override
+    public boolean mayInterrupt() {
+        return insertion.mayInterrupt(tokens);
+    }
 }
@@ -1,5 +1,6 @@
 package liqp.nodes;
 
+import liqp.RenderTransformer.ObjectAppender;
 import liqp.TemplateContext;
 
 /**
@@ -18,4 +19,35 @@ public interface LNode {
      * @return an Object denoting the rendered AST.
      */
     Object render(TemplateContext context);
+
+    /**
+     * Renders this AST straight into the given appender, where possible.
+     *
+     * Nodes that do not stream their output return it instead, just like
+     * {@link #render(TemplateContext)}, and leave appending it to the caller.
+     *
+     * @param context
+     *         the context (variables) with which this
+     *         node should be rendered.
+     * @param appender
+     *         the appender that receives the output.
+     *
+     * @return {@code null} if all output was appended, {@link liqp.LValue#BREAK}
+     *         or {@link liqp.LValue#CONTINUE} if the rendering was interrupted,
+     *         and otherwise the rendered object that still needs to be appended.
+     */
+    default Object renderTo(TemplateContext context, ObjectAppender appender) {
+        return render(context);
+    }
+
+    /**
+     * Returns whether rendering this node may return {@link liqp.LValue#BREAK}
+     * or {@link liqp.LValue#CONTINUE}. A block that may be interrupted drops
+     * its partial output, so it cannot be streamed.
+     *
+     * @return true iff rendering this node may be interrupted.
+     */
+    default boolean mayInterrupt() {
+        return false;
+    }
 }
@@ -7,17 +7,39 @@ import java.util.List;
 import java.util.Map;
 
 import liqp.TemplateContext;
+import liqp.VariableLayout;
 import liqp.exceptions.VariableNotExistException;
 import liqp.parser.Inspectable;
+import liqp.parser.LiquidDrop;
 import liqp.parser.LiquidSupport;
+import liqp.parser.PropertyAccessors;
+import liqp.query.Query;
 
 public class LookupNode implements LNode {
 
-    private final String id;
-    private final List<Indexable> indexes;
+    final String id;
+    // the layout of the template of this lookup, and the slot of the id in it (or -1 when the id is
+    // looked up by name, as [var] lookups are)
+    private final VariableLayout layout;
+    private final int slot;
+    final List<Indexable> indexes;
 
     public LookupNode(String id) {
+        this(id, null);
+    }
+
+    /**
+     * Creates a lookup of the given id, which reads it by its slot in the given layout.
+     *
+     * @param id
+     *            the id, or {@code "@"} followed by the name of the variable that holds the id.
+     * @param layout
+     *            the layout of the template of this lookup, or {@code null} to look up the id by name.
+     */
+    public LookupNode(String id, VariableLayout layout) {
         this.id = id;
+        this.layout = layout;
+        this.slot = layout == null || id.startsWith("@") ? -1 : layout.register(id);
         indexes = new ArrayList<>();
     }
 
@@ -31,14 +53,19 @@ public class LookupNode implements LNode {
         Object value = null;
 
         String realId;
-        // Check if there's a [var] lookup, AST: ^(LOOKUP Id["@var"])
-        if(id.startsWith("@")) {
-            realId = String.valueOf(context.get(id.substring(1)));
-        } else {
+        if (slot >= 0) {
             realId = id;
-        }
-        if (context.containsKey(realId)) {
-            value = context.get(realId);
+            value = context.get(layout, slot);
+        } else {
+            // Check if there's a [var] lookup, AST: ^(LOOKUP Id["@var"])
+            if(id.startsWith("@")) {
+                realId = String.valueOf(context.get(id.substring(1)));
+            } else {
+                realId = id;
+            }
+            if (context.containsKey(realId)) {
+                value = context.get(realId);
+            }
         }
         if (value == null) {
             Map<String, Object> environmentMap = context.getEnvironmentMap();
@@ -77,7 +104,7 @@ public class LookupNode implements LNode {
 
     public static class Hash implements Indexable {
 
-        private final String hash;
+        final String hash;
 
         public Hash(String hash) {
             this.hash = hash;
@@ -90,6 +117,26 @@ public class LookupNode implements LNode {
                 return null;
             }
 
+            if(value instanceof LiquidDrop) {
+                Object property = ((LiquidDrop) value).getProperty(hash);
+                if (property != LiquidDrop.UNDEFINED) {
+                    return property;
+                }
+                if (!hash.equals("size")) {
+                    return null;
+                }
+            }
+
+            if(value instanceof Query) {
+                Query query = (Query) value;
+                switch (hash) {
+                    case "size": return query.count();
+                    case "first": return query.first();
+                    case "last": return query.last();
+                    default: return null;
+                }
+            }
+
             if(hash.equals("size")) {
                 if(value instanceof Collection) {
                     return ((Collection<?>)value).size();
@@ -97,7 +144,11 @@ public class LookupNode implements LNode {
                 else if(value instanceof java.util.Map || value instanceof Inspectable) {
                     java.util.Map map;
                     if (value instanceof Inspectable) {
-                        LiquidSupport evaluated = context.renderSettings.evaluate(context.parseSettings.mapper, value);
+                        Object property = getDirectly(value, context);
+                        if (property != PropertyAccessors.UNRESOLVED) {
+                            return property;
+                        }
+                        LiquidSupport evaluated = context.evaluate(value);
                         map = evaluated.toLiquid();
                     } else {
                         map = (java.util.Map) value;
@@ -136,7 +187,11 @@ public class LookupNode implements LNode {
             if(value instanceof java.util.Map || value instanceof Inspectable) {
                 java.util.Map map;
                 if (value instanceof Inspectable) {
-                    LiquidSupport evaluated = context.renderSettings.evaluate(context.parseSettings.mapper, value);
+                    Object property = getDirectly(value, context);
+                    if (property != PropertyAccessors.UNRESOLVED) {
+                        return property;
+                    }
+                    LiquidSupport evaluated = context.evaluate(value);
                     map = evaluated.toLiquid();
                 } else {
                     map = (java.util.Map) value;
@@ -150,6 +205,14 @@ public class LookupNode implements LNode {
             }
         }
 
+        // reads the property of an Inspectable without converting it, when possible
+        private Object getDirectly(Object value, TemplateContext context) {
+            if (value instanceof LiquidSupport) {
+                return PropertyAccessors.UNRESOLVED;
+            }
+            return context.getParseSettings().getPropertyAccessors().get(value, hash);
+        }
+
         @Override
         public String toString() {
             return String.format(".%s", hash);
@@ -158,9 +221,8 @@ public class LookupNode implements LNode {
 
     public static class Index implements Indexable {
 
-        private final LNode expression;
-        private final String text;
-        private Object key = null;
+        final LNode expression;
+        final String text;
 
         public Index(LNode expression, String text) {
             this.expression = expression;
@@ -174,7 +236,7 @@ public class LookupNode implements LNode {
                 return null;
             }
 
-            key = expression.render(context);
+            Object key = expression.render(context);
 
             if (key instanceof Number) {
                 int index = ((Number)key).intValue();
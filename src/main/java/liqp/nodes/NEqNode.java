@@ -5,8 +5,8 @@ import liqp.TemplateContext;
 
 public class NEqNode implements LNode {
 
-    private LNode lhs;
-    private LNode rhs;
+    LNode lhs;
+    LNode rhs;
 
     public NEqNode(LNode lhs, LNode rhs) {
         this.lhs = lhs;
@@ -0,0 +1,411 @@
+package liqp.nodes;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import liqp.Insertions;
+import liqp.LValue;
+import liqp.VariableLayout;
+import liqp.filters.Filter;
+import liqp.filters.Filters;
+
+/**
+ * Writes node trees to, and reads them back from, the binary form used by
+ * {@link liqp.Template#writeCompiled(java.io.OutputStream)}. Tags and filters are written by name and
+ * looked up again in the given {@link Insertions} and {@link Filters} when a tree is read, so reading
+ * a tree needs neither the lexer nor the parser.
+ * <p/>
+ * Only the nodes built by the parser are supported; compiled blocks (see {@link TemplateCompiler}) are
+ * written as the blocks they were compiled from.
+ */
+public final class NodeSerializer {
+
+    private static final int NULL = 0;
+    private static final int BLOCK = 1;
+    private static final int ATOM = 2;
+    private static final int OUTPUT = 3;
+    private static final int FILTER = 4;
+    private static final int INSERTION = 5;
+    private static final int LOOKUP = 6;
+    private static final int ATTRIBUTE = 7;
+    private static final int KEY_VALUE = 8;
+    private static final int EQ = 9;
+    private static final int NEQ = 10;
+    private static final int GT = 11;
+    private static final int GT_EQ = 12;
+    private static final int LT = 13;
+    private static final int LT_EQ = 14;
+    private static final int CONTAINS = 15;
+    private static final int AND = 16;
+    private static final int OR = 17;
+
+    // the kinds of atom values
+    private static final int VALUE_NULL = 0;
+    private static final int VALUE_STRING = 1;
+    private static final int VALUE_LONG = 2;
+    private static final int VALUE_DOUBLE = 3;
+    private static final int VALUE_TRUE = 4;
+    private static final int VALUE_FALSE = 5;
+    private static final int VALUE_EMPTY = 6;
+    private static final int VALUE_BLANK = 7;
+    private static final int VALUE_BREAK = 8;
+    private static final int VALUE_CONTINUE = 9;
+
+    // the kinds of lookup indexes
+    private static final int INDEX_HASH = 0;
+    private static final int INDEX_EXPRESSION = 1;
+
+    private NodeSerializer() {
+    }
+
+    /**
+     * Writes the given tree.
+     *
+     * @param node
+     *            the root of the tree, which may be {@code null}.
+     * @param out
+     *            the output to write to.
+     * @throws NotSerializableException
+     *             when the tree holds a node or a literal the parser does not create.
+     */
+    public static void write(LNode node, DataOutput out) throws IOException {
+        if (node == null) {
+            out.writeByte(NULL);
+        } else if (node instanceof BlockNode) {
+            List<LNode> children = ((BlockNode) node).getChildren();
+            out.writeByte(BLOCK);
+            out.writeInt(children.size());
+            for (LNode child : children) {
+                write(child, out);
+            }
+        } else if (node.getClass() == AtomNode.class) {
+            out.writeByte(ATOM);
+            writeValue(node.render(null), out);
+        } else if (node.getClass() == OutputNode.class) {
+            OutputNode output = (OutputNode) node;
+            out.writeByte(OUTPUT);
+            write(output.expression, out);
+            out.writeInt(output.filters.size());
+            for (FilterNode filter : output.filters) {
+                write(filter, out);
+            }
+        } else if (node.getClass() == FilterNode.class) {
+            FilterNode filter = (FilterNode) node;
+            out.writeByte(FILTER);
+            out.writeInt(filter.line);
+            out.writeInt(filter.tokenStartIndex);
+            writeString(filter.text, out);
+            writeString(filter.filter == null ? null : filter.filter.name, out);
+            writeNodes(filter.params, out);
+        } else if (node.getClass() == InsertionNode.class) {
+            InsertionNode insertion = (InsertionNode) node;
+            out.writeByte(INSERTION);
+            writeString(insertion.insertion.name, out);
+            out.writeInt(insertion.tokens.length);
+            for (LNode token : insertion.tokens) {
+                write(token, out);
+            }
+        } else if (node.getClass() == LookupNode.class) {
+            LookupNode lookup = (LookupNode) node;
+            out.writeByte(LOOKUP);
+            writeString(lookup.id, out);
+            out.writeInt(lookup.indexes.size());
+            for (LookupNode.Indexable index : lookup.indexes) {
+                writeIndex(index, out);
+            }
+        } else if (node.getClass() == AttributeNode.class) {
+            out.writeByte(ATTRIBUTE);
+            write(((AttributeNode) node).key, out);
+            write(((AttributeNode) node).value, out);
+        } else if (node.getClass() == KeyValueNode.class) {
+            out.writeByte(KEY_VALUE);
+            writeString(((KeyValueNode) node).key, out);
+            write(((KeyValueNode) node).value, out);
+        } else if (node.getClass() == EqNode.class) {
+            writeBinary(EQ, ((EqNode) node).lhs, ((EqNode) node).rhs, out);
+        } else if (node.getClass() == NEqNode.class) {
+            writeBinary(NEQ, ((NEqNode) node).lhs, ((NEqNode) node).rhs, out);
+        } else if (node.getClass() == GtNode.class) {
+            writeComparison(GT, (ComparingExpressionNode) node, out);
+        } else if (node.getClass() == GtEqNode.class) {
+            writeComparison(GT_EQ, (ComparingExpressionNode) node, out);
+        } else if (node.getClass() == LtNode.class) {
+            writeComparison(LT, (ComparingExpressionNode) node, out);
+        } else if (node.getClass() == LtEqNode.class) {
+            writeComparison(LT_EQ, (ComparingExpressionNode) node, out);
+        } else if (node.getClass() == ContainsNode.class) {
+            writeBinary(CONTAINS, ((ContainsNode) node).lhs, ((ContainsNode) node).rhs, out);
+        } else if (node.getClass() == AndNode.class) {
+            writeBinary(AND, ((AndNode) node).lhs, ((AndNode) node).rhs, out);
+        } else if (node.getClass() == OrNode.class) {
+            writeBinary(OR, ((OrNode) node).lhs, ((OrNode) node).rhs, out);
+        } else {
+            throw new NotSerializableException(node.getClass().getName());
+        }
+    }
+
+    /**
+     * Reads a tree written by {@link #write(LNode, DataOutput)}.
+     *
+     * @param in
+     *            the input to read from; no more is read than was written.
+     * @param insertions
+     *            the tags the tree refers to by name.
+     * @param filters
+     *            the filters the tree refers to by name.
+     * @return the root of the tree, which is a {@link BlockNode} marked as root if it is a block.
+     * @throws IOException
+     *             when the input cannot be read or does not hold a tree.
+     */
+    public static LNode read(DataInput in, Insertions insertions, Filters filters) throws IOException {
+        return read(in, insertions, filters, new VariableLayout());
+    }
+
+    /**
+     * Reads a tree written by {@link #write(LNode, DataOutput)}, numbering the ids of its lookups in the
+     * given layout.
+     *
+     * @param in
+     *            the input to read from.
+     * @param insertions
+     *            the tags the tree refers to by name.
+     * @param filters
+     *            the filters the tree refers to by name.
+     * @param layout
+     *            the layout of the template the tree belongs to.
+     * @return the root of the tree, which is a {@link BlockNode} marked as root if it is a block.
+     * @throws IOException
+     *             when the input cannot be read or does not hold a tree.
+     */
+    public static LNode read(DataInput in, Insertions insertions, Filters filters, VariableLayout layout)
+            throws IOException {
+        return new Reader(in, insertions, filters, layout).read(true);
+    }
+
+    private static void writeNodes(List<LNode> nodes, DataOutput out) throws IOException {
+        out.writeInt(nodes.size());
+        for (LNode node : nodes) {
+            write(node, out);
+        }
+    }
+
+    private static void writeBinary(int kind, LNode lhs, LNode rhs, DataOutput out) throws IOException {
+        out.writeByte(kind);
+        write(lhs, out);
+        write(rhs, out);
+    }
+
+    private static void writeComparison(int kind, ComparingExpressionNode node, DataOutput out)
+            throws IOException {
+        writeBinary(kind, node.lhs, node.rhs, out);
+    }
+
+    private static void writeIndex(LookupNode.Indexable index, DataOutput out) throws IOException {
+        if (index.getClass() == LookupNode.Hash.class) {
+            out.writeByte(INDEX_HASH);
+            writeString(((LookupNode.Hash) index).hash, out);
+        } else if (index.getClass() == LookupNode.Index.class) {
+            out.writeByte(INDEX_EXPRESSION);
+            write(((LookupNode.Index) index).expression, out);
+            writeString(((LookupNode.Index) index).text, out);
+        } else {
+            throw new NotSerializableException(index.getClass().getName());
+        }
+    }
+
+    private static void writeValue(Object value, DataOutput out) throws IOException {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(VALUE_STRING);
+            writeString((String) value, out);
+        } else if (value instanceof Long) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? VALUE_TRUE : VALUE_FALSE);
+        } else if (AtomNode.isEmpty(value)) {
+            out.writeByte(VALUE_EMPTY);
+        } else if (AtomNode.isBlank(value)) {
+            out.writeByte(VALUE_BLANK);
+        } else if (value == LValue.BREAK) {
+            out.writeByte(VALUE_BREAK);
+        } else if (value == LValue.CONTINUE) {
+            out.writeByte(VALUE_CONTINUE);
+        } else {
+            throw new NotSerializableException(value.getClass().getName());
+        }
+    }
+
+    // unlike DataOutput.writeUTF, not limited to 64K bytes
+    private static void writeString(String value, DataOutput out) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static final class Reader {
+
+        private final DataInput in;
+        private final Insertions insertions;
+        private final Filters filters;
+        private final VariableLayout layout;
+
+        Reader(DataInput in, Insertions insertions, Filters filters, VariableLayout layout) {
+            this.in = in;
+            this.insertions = insertions;
+            this.filters = filters;
+            this.layout = layout;
+        }
+
+        LNode read(boolean isRoot) throws IOException {
+            int kind = in.readByte();
+            switch (kind) {
+                case NULL:
+                    return null;
+                case BLOCK: {
+                    BlockNode block = new BlockNode(isRoot);
+                    for (int i = readCount(); i > 0; i--) {
+                        block.add(read(false));
+                    }
+                    return block;
+                }
+                case ATOM:
+                    return readAtom();
+                case OUTPUT: {
+                    OutputNode output = new OutputNode(read(false));
+                    for (int i = readCount(); i > 0; i--) {
+                        if (in.readByte() != FILTER) {
+                            throw new IOException("filter expected");
+                        }
+                        output.addFilter(readFilter());
+                    }
+                    return output;
+                }
+                case FILTER:
+                    return readFilter();
+                case INSERTION: {
+                    String name = readString();
+                    LNode[] tokens = new LNode[readCount()];
+                    for (int i = 0; i < tokens.length; i++) {
+                        tokens[i] = read(false);
+                    }
+                    return new InsertionNode(name, insertions.get(name), tokens);
+                }
+                case LOOKUP: {
+                    LookupNode lookup = new LookupNode(readString(), layout);
+                    for (int i = readCount(); i > 0; i--) {
+                        lookup.add(readIndex());
+                    }
+                    return lookup;
+                }
+                case ATTRIBUTE:
+                    return new AttributeNode(read(false), read(false));
+                case KEY_VALUE:
+                    return new KeyValueNode(readString(), read(false));
+                case EQ:
+                    return new EqNode(read(false), read(false));
+                case NEQ:
+                    return new NEqNode(read(false), read(false));
+                case GT:
+                    return new GtNode(read(false), read(false));
+                case GT_EQ:
+                    return new GtEqNode(read(false), read(false));
+                case LT:
+                    return new LtNode(read(false), read(false));
+                case LT_EQ:
+                    return new LtEqNode(read(false), read(false));
+                case CONTAINS:
+                    return new ContainsNode(read(false), read(false));
+                case AND:
+                    return new AndNode(read(false), read(false));
+                case OR:
+                    return new OrNode(read(false), read(false));
+                default:
+                    throw new IOException("unknown node kind: " + kind);
+            }
+        }
+
+        private FilterNode readFilter() throws IOException {
+            int line = in.readInt();
+            int tokenStartIndex = in.readInt();
+            String text = readString();
+            String name = readString();
+            Filter filter = name == null ? null : filters.get(name);
+            FilterNode node = new FilterNode(line, tokenStartIndex, text, filter);
+            for (int i = readCount(); i > 0; i--) {
+                node.add(read(false));
+            }
+            return node;
+        }
+
+        private LookupNode.Indexable readIndex() throws IOException {
+            int kind = in.readByte();
+            switch (kind) {
+                case INDEX_HASH:
+                    return new LookupNode.Hash(readString());
+                case INDEX_EXPRESSION:
+                    return new LookupNode.Index(read(false), readString());
+                default:
+                    throw new IOException("unknown index kind: " + kind);
+            }
+        }
+
+        private AtomNode readAtom() throws IOException {
+            int kind = in.readByte();
+            switch (kind) {
+                case VALUE_NULL:
+                    return new AtomNode(null);
+                case VALUE_STRING:
+                    return new AtomNode(readString());
+                case VALUE_LONG:
+                    return new AtomNode(in.readLong());
+                case VALUE_DOUBLE:
+                    return new AtomNode(in.readDouble());
+                case VALUE_TRUE:
+                    return new AtomNode(true);
+                case VALUE_FALSE:
+                    return new AtomNode(false);
+                case VALUE_EMPTY:
+                    return AtomNode.EMPTY;
+                case VALUE_BLANK:
+                    return AtomNode.BLANK;
+                case VALUE_BREAK:
+                    return new AtomNode(LValue.BREAK);
+                case VALUE_CONTINUE:
+                    return new AtomNode(LValue.CONTINUE);
+                default:
+                    throw new IOException("unknown value kind: " + kind);
+            }
+        }
+
+        private int readCount() throws IOException {
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("negative count: " + count);
+            }
+            return count;
+        }
+
+        private String readString() throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -5,8 +5,8 @@ import liqp.TemplateContext;
 
 public class OrNode extends LValue implements LNode {
 
-    private LNode lhs;
-    private LNode rhs;
+    LNode lhs;
+    LNode rhs;
 
     public OrNode(LNode lhs, LNode rhs) {
         this.lhs = lhs;
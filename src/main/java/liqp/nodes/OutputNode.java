@@ -7,8 +7,8 @@ import java.util.List;
 
 public class OutputNode implements LNode {
 
-    private LNode expression;
-    private List<FilterNode> filters;
+    final LNode expression;
+    final List<FilterNode> filters;
 
     public OutputNode(LNode expression) {
         this.expression = expression;
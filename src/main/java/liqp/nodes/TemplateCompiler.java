@@ -0,0 +1,394 @@
+package liqp.nodes;
+
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFNULL;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import liqp.RenderTransformer.ObjectAppender;
+import liqp.TemplateContext;
+
+/**
+ * Compiles the blocks of a node tree into a generated class (see {@link CompiledBlocks}), once, when a
+ * template is parsed with {@link liqp.ParseSettings.Builder#withBytecodeCompilation(boolean)}. All
+ * blocks of a template share a single class, with a method for each block, loaded by a class loader of
+ * its own so that it is unloaded with the template.
+ * <p/>
+ * In the generated code, static text is appended as a constant, an output is its expression followed
+ * by direct calls to its filters, and every other child is called through a field of its own class.
+ * Each call site thus only ever sees a single class, which lets the JIT inline it. The bodies of
+ * {@code for} loops are compiled as well, and run once per iteration without walking their children.
+ * Tags themselves are not compiled: they render their (compiled) blocks as they always do.
+ */
+public final class TemplateCompiler {
+
+    // blocks with more children are left as they are, to keep the generated methods small
+    private static final int MAX_CHILDREN = 1000;
+
+    // the blocks and fields of a class, which keep its constructor and dispatch methods within the 64K
+    // a method may have, and the entries its constant pool may use (of the 65535 a class file allows);
+    // the blocks that do not fit are left as they are
+    private static final int MAX_BLOCKS = 2000;
+    private static final int MAX_FIELDS = 4000;
+    private static final int MAX_CONSTANTS = 40000;
+
+    // longer text is not a constant, as the class file limits those to 65535 bytes
+    private static final int MAX_CONSTANT_LENGTH = 65535 / 3;
+
+    private static final String SUPER_NAME = Type.getInternalName(CompiledBlocks.class);
+    private static final String BLOCK_NODE = Type.getInternalName(CompiledBlockNode.class);
+    private static final String LNODE = Type.getInternalName(LNode.class);
+    private static final String FILTER_NODE = Type.getInternalName(FilterNode.class);
+    private static final String CONTEXT = Type.getInternalName(TemplateContext.class);
+    private static final String APPENDER = Type.getInternalName(ObjectAppender.class);
+    private static final String OBJECT = Type.getInternalName(Object.class);
+
+    private static final String RENDER = "(L" + CONTEXT + ";)Ljava/lang/Object;";
+    private static final String RENDER_TO = "(L" + CONTEXT + ";L" + APPENDER + ";)Ljava/lang/Object;";
+    private static final String RENDER_STEPS = "(L" + CONTEXT + ";L" + APPENDER + ";Z)Ljava/lang/Object;";
+    private static final String DISPATCH = "(IL" + CONTEXT + ";L" + APPENDER + ";Z)Ljava/lang/Object;";
+    private static final String APPEND_VALUE = "(Ljava/lang/Object;L" + CONTEXT + ";L" + APPENDER + ";)V";
+
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    // the fields of the generated class, and the blocks that are compiled into it, by their number
+    private final List<Object> values = new ArrayList<>();
+    private final List<CompiledBlockNode> blocks = new ArrayList<>();
+    private final List<List<Step>> blockSteps = new ArrayList<>();
+    private int constants;
+
+    private TemplateCompiler() {
+    }
+
+    /**
+     * Compiles the blocks of the given tree, in place.
+     *
+     * @param root
+     *            the root of the tree.
+     * @return the compiled root.
+     */
+    public static LNode compile(LNode root) {
+        TemplateCompiler compiler = new TemplateCompiler();
+        LNode compiled = compiler.compileNode(root);
+        if (!compiler.blocks.isEmpty()) {
+            compiler.generate();
+        }
+        return compiled;
+    }
+
+    private LNode compileNode(LNode node) {
+        if (node instanceof InsertionNode) {
+            LNode[] tokens = ((InsertionNode) node).tokens;
+            for (int i = 0; i < tokens.length; i++) {
+                if (tokens[i] instanceof BlockNode) {
+                    tokens[i] = compileNode(tokens[i]);
+                }
+            }
+            return node;
+        }
+        if (!(node instanceof BlockNode) || node instanceof CompiledBlockNode) {
+            return node;
+        }
+
+        BlockNode block = (BlockNode) node;
+        List<LNode> children = block.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            children.set(i, compileNode(children.get(i)));
+        }
+        block.setChildren(children);
+        if (children.size() > MAX_CHILDREN) {
+            return block;
+        }
+        return compileBlock(block, children);
+    }
+
+    // a child of a block: either text, or a node with the values of its fields
+    private static final class Step {
+        final String text;
+        final int firstField;
+        final int fieldCount;
+        final boolean output;
+
+        Step(String text, int firstField, int fieldCount, boolean output) {
+            this.text = text;
+            this.firstField = firstField;
+            this.fieldCount = fieldCount;
+            this.output = output;
+        }
+    }
+
+    // numbers the block, and describes the method that renders it; the class is generated once all
+    // blocks are numbered, see generate()
+    private BlockNode compileBlock(BlockNode block, List<LNode> children) {
+        List<Object> fields = new ArrayList<>();
+        List<Step> steps = new ArrayList<>();
+        int blockConstants = 6;
+        for (LNode child : children) {
+            Object text = child instanceof AtomNode ? child.render(null) : null;
+            if (text instanceof String && ((String) text).length() <= MAX_CONSTANT_LENGTH) {
+                steps.add(new Step((String) text, -1, 0, false));
+                blockConstants += 2;
+            } else if (child instanceof OutputNode) {
+                OutputNode output = (OutputNode) child;
+                steps.add(new Step(null, values.size() + fields.size(), 1 + output.filters.size(), true));
+                fields.add(output.expression);
+                fields.addAll(output.filters);
+            } else {
+                steps.add(new Step(null, values.size() + fields.size(), 1, false));
+                fields.add(child);
+            }
+        }
+        blockConstants += 4 * fields.size();
+        if (blocks.size() >= MAX_BLOCKS || values.size() + fields.size() > MAX_FIELDS
+                || constants + blockConstants > MAX_CONSTANTS) {
+            return block;
+        }
+
+        constants += blockConstants;
+        values.addAll(fields);
+        CompiledBlockNode compiled = new CompiledBlockNode(block, blocks.size());
+        blocks.add(compiled);
+        blockSteps.add(steps);
+        return compiled;
+    }
+
+    private void generate() {
+        String name = "liqp/nodes/compiled/Template" + COUNTER.incrementAndGet();
+        String[] fieldTypes = new String[values.size()];
+        for (int i = 0; i < fieldTypes.length; i++) {
+            fieldTypes[i] = values.get(i) instanceof FilterNode ? FILTER_NODE : typeOf(values.get(i));
+        }
+
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                // only ever asked for the values of children, which are typed as Object
+                return OBJECT;
+            }
+        };
+        writer.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, name, null, SUPER_NAME, null);
+        for (int i = 0; i < fieldTypes.length; i++) {
+            writer.visitField(ACC_PRIVATE | ACC_FINAL, "f" + i, "L" + fieldTypes[i] + ";", null, null)
+                    .visitEnd();
+        }
+        writeConstructor(writer, name, fieldTypes);
+        for (int i = 0; i < blockSteps.size(); i++) {
+            writeSteps(writer, name, "c" + i, fieldTypes, blockSteps.get(i), false);
+            writeSteps(writer, name, "l" + i, fieldTypes, blockSteps.get(i), true);
+        }
+        writeDispatch(writer, name, "renderChildren", "c", blockSteps.size());
+        writeDispatch(writer, name, "renderLoopBody", "l", blockSteps.size());
+        writer.visitEnd();
+
+        CompiledBlocks code;
+        try {
+            Class<?> type = new Loader().define(name.replace('/', '.'), writer.toByteArray());
+            code = (CompiledBlocks) type.getConstructor(Object[].class).newInstance((Object) values.toArray());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("could not compile template", e);
+        }
+        for (CompiledBlockNode block : blocks) {
+            block.setCode(code);
+        }
+    }
+
+    private static void writeConstructor(ClassWriter writer, String name, String[] fieldTypes) {
+        MethodVisitor method = writer.visitMethod(ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V", null, null);
+        method.visitCode();
+        method.visitVarInsn(ALOAD, 0);
+        method.visitMethodInsn(INVOKESPECIAL, SUPER_NAME, "<init>", "()V", false);
+        for (int i = 0; i < fieldTypes.length; i++) {
+            method.visitVarInsn(ALOAD, 0);
+            method.visitVarInsn(ALOAD, 1);
+            method.visitLdcInsn(i);
+            method.visitInsn(AALOAD);
+            method.visitTypeInsn(CHECKCAST, fieldTypes[i]);
+            method.visitFieldInsn(PUTFIELD, name, "f" + i, "L" + fieldTypes[i] + ";");
+        }
+        method.visitInsn(RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+    }
+
+    // writes the method that renders the children of a block, or its loop body; the locals are: this,
+    // context, appender, streaming, value
+    private static void writeSteps(ClassWriter writer, String name, String methodName, String[] fieldTypes,
+            List<Step> steps, boolean loopBody) {
+        MethodVisitor method = writer.visitMethod(ACC_PRIVATE, methodName, RENDER_STEPS, null, null);
+        method.visitCode();
+
+        for (Step step : steps) {
+            if (!loopBody) {
+                method.visitVarInsn(ALOAD, 1);
+                method.visitMethodInsn(INVOKEVIRTUAL, CONTEXT, "checkRenderTime", "()V", false);
+            }
+
+            if (step.text != null) {
+                method.visitVarInsn(ALOAD, 2);
+                method.visitLdcInsn(step.text);
+                method.visitMethodInsn(INVOKEINTERFACE, APPENDER, "append", "(Ljava/lang/Object;)V", true);
+                continue;
+            }
+
+            if (step.output) {
+                // value = expression.render(context); value = filter.apply(value, context); ...
+                invokeRender(method, name, fieldTypes, step.firstField);
+                for (int i = step.firstField + 1; i < step.firstField + step.fieldCount; i++) {
+                    method.visitVarInsn(ASTORE, 4);
+                    method.visitVarInsn(ALOAD, 0);
+                    method.visitFieldInsn(GETFIELD, name, "f" + i, "L" + FILTER_NODE + ";");
+                    method.visitVarInsn(ALOAD, 4);
+                    method.visitVarInsn(ALOAD, 1);
+                    method.visitMethodInsn(INVOKEVIRTUAL, FILTER_NODE, "apply", "(Ljava/lang/Object;L"
+                            + CONTEXT + ";)Ljava/lang/Object;", false);
+                }
+            } else {
+                // value = streaming ? node.renderTo(context, appender) : node.render(context)
+                Label render = new Label();
+                Label rendered = new Label();
+                method.visitVarInsn(ILOAD, 3);
+                method.visitJumpInsn(IFEQ, render);
+                method.visitVarInsn(ALOAD, 0);
+                method.visitFieldInsn(GETFIELD, name, "f" + step.firstField, "L" + fieldTypes[step.firstField]
+                        + ";");
+                method.visitVarInsn(ALOAD, 1);
+                method.visitVarInsn(ALOAD, 2);
+                invoke(method, fieldTypes[step.firstField], "renderTo", RENDER_TO);
+                method.visitJumpInsn(GOTO, rendered);
+                method.visitLabel(render);
+                invokeRender(method, name, fieldTypes, step.firstField);
+                method.visitLabel(rendered);
+            }
+
+            // if (value != null) { if (isInterrupt(value)) return value; append...(value, context, appender); }
+            Label next = new Label();
+            Label append = new Label();
+            method.visitVarInsn(ASTORE, 4);
+            method.visitVarInsn(ALOAD, 4);
+            method.visitJumpInsn(IFNULL, next);
+            method.visitVarInsn(ALOAD, 4);
+            method.visitMethodInsn(INVOKESTATIC, BLOCK_NODE, "isInterrupt", "(Ljava/lang/Object;)Z", false);
+            method.visitJumpInsn(IFEQ, append);
+            method.visitVarInsn(ALOAD, 4);
+            method.visitInsn(ARETURN);
+            method.visitLabel(append);
+            method.visitVarInsn(ALOAD, 4);
+            method.visitVarInsn(ALOAD, 1);
+            method.visitVarInsn(ALOAD, 2);
+            method.visitMethodInsn(INVOKESTATIC, BLOCK_NODE, loopBody ? "appendLoopValue" : "appendBlockValue",
+                    APPEND_VALUE, false);
+            method.visitLabel(next);
+        }
+
+        method.visitInsn(ACONST_NULL);
+        method.visitInsn(ARETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+    }
+
+    // writes renderChildren, or renderLoopBody, which call the method of the given block; the locals
+    // are: this, block, context, appender, streaming
+    private static void writeDispatch(ClassWriter writer, String name, String methodName, String prefix,
+            int blockCount) {
+        MethodVisitor method = writer.visitMethod(ACC_PUBLIC, methodName, DISPATCH, null, null);
+        method.visitCode();
+
+        Label[] labels = new Label[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+            labels[i] = new Label();
+        }
+        Label unknown = new Label();
+        method.visitVarInsn(ILOAD, 1);
+        method.visitTableSwitchInsn(0, blockCount - 1, unknown, labels);
+        for (int i = 0; i < blockCount; i++) {
+            method.visitLabel(labels[i]);
+            method.visitVarInsn(ALOAD, 0);
+            method.visitVarInsn(ALOAD, 2);
+            method.visitVarInsn(ALOAD, 3);
+            method.visitVarInsn(ILOAD, 4);
+            method.visitMethodInsn(INVOKESPECIAL, name, prefix + i, RENDER_STEPS, false);
+            method.visitInsn(ARETURN);
+        }
+        method.visitLabel(unknown);
+        method.visitInsn(ACONST_NULL);
+        method.visitInsn(ARETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+    }
+
+    private static void invokeRender(MethodVisitor method, String name, String[] fieldTypes, int field) {
+        method.visitVarInsn(ALOAD, 0);
+        method.visitFieldInsn(GETFIELD, name, "f" + field, "L" + fieldTypes[field] + ";");
+        method.visitVarInsn(ALOAD, 1);
+        invoke(method, fieldTypes[field], "render", RENDER);
+    }
+
+    private static void invoke(MethodVisitor method, String owner, String name, String descriptor) {
+        boolean isInterface = owner.equals(LNODE);
+        method.visitMethodInsn(isInterface ? INVOKEINTERFACE : INVOKEVIRTUAL, owner, name, descriptor,
+                isInterface);
+    }
+
+    // the most specific class of the node that the generated code can name, or LNode
+    private static String typeOf(Object node) {
+        for (Class<?> type = node.getClass(); type != null; type = type.getSuperclass()) {
+            if (LNode.class.isAssignableFrom(type) && isAccessible(type)) {
+                return Type.getInternalName(type);
+            }
+        }
+        return LNODE;
+    }
+
+    private static boolean isAccessible(Class<?> type) {
+        // classes of other loaders may not be visible from the generated ones
+        if (type.getClassLoader() != LNode.class.getClassLoader() || type.isAnonymousClass()) {
+            return false;
+        }
+        for (Class<?> outer = type; outer != null; outer = outer.getEnclosingClass()) {
+            if (!Modifier.isPublic(outer.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // loads the class generated for a single template, which can be unloaded with it
+    private static final class Loader extends ClassLoader {
+
+        Loader() {
+            super(CompiledBlockNode.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
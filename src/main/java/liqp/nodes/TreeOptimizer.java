@@ -0,0 +1,298 @@
+package liqp.nodes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import liqp.LValue;
+import liqp.TemplateContext;
+import liqp.TemplateParser;
+import liqp.blocks.Case;
+import liqp.blocks.If;
+import liqp.blocks.Unless;
+
+/**
+ * Simplifies the node tree of a template once, when it is parsed (see
+ * {@link liqp.ParseSettings.Builder#withOptimize(boolean)}), without changing what it renders:
+ * <ul>
+ * <li>comparisons, {@code and} and {@code or} over literals are replaced by their value,</li>
+ * <li>branches of {@code if}, {@code unless} and {@code case} that cannot be taken are removed, and a
+ * tag whose branch is known is replaced by that branch,</li>
+ * <li>outputs of a literal string without filters are replaced by the string,</li>
+ * <li>adjacent static text in a block is merged, so that a fully static block is a single string.</li>
+ * </ul>
+ * Only the built-in {@code if}, {@code unless} and {@code case} tags are rewritten; the nodes of other
+ * tags are kept as they are, except for the blocks they hold.
+ */
+public final class TreeOptimizer extends LValue {
+
+    private final TemplateParser parser;
+
+    // the context the literals are compared in, which they do not read
+    private TemplateContext context;
+
+    private TreeOptimizer(TemplateParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Optimizes the given tree in place.
+     *
+     * @param root
+     *            the root of the tree, as built by the parser.
+     * @param parser
+     *            the parser of the template, whose settings the literals are compared with; a
+     *            comparison that fails or records an error is kept for the render.
+     * @return the optimized root.
+     */
+    public static LNode optimize(LNode root, TemplateParser parser) {
+        TreeOptimizer optimizer = new TreeOptimizer(parser);
+        if (root instanceof BlockNode) {
+            optimizer.optimizeBlock((BlockNode) root);
+            return root;
+        }
+        LNode optimized = optimizer.optimizeNode(root);
+        return optimized == null ? new BlockNode() : optimized;
+    }
+
+    /**
+     * Returns the number of nodes of the given tree.
+     */
+    public static int countNodes(LNode node) {
+        if (node == null) {
+            return 0;
+        }
+        int count = 1;
+        if (node instanceof BlockNode) {
+            for (LNode child : ((BlockNode) node).getChildren()) {
+                count += countNodes(child);
+            }
+        } else if (node instanceof InsertionNode) {
+            for (LNode token : ((InsertionNode) node).tokens) {
+                count += countNodes(token);
+            }
+        } else if (node instanceof OutputNode) {
+            OutputNode output = (OutputNode) node;
+            count += countNodes(output.expression);
+            for (FilterNode filter : output.filters) {
+                count += countNodes(filter);
+            }
+        } else if (node instanceof FilterNode) {
+            for (LNode param : ((FilterNode) node).params) {
+                count += countNodes(param);
+            }
+        } else if (node instanceof LookupNode) {
+            for (LookupNode.Indexable index : ((LookupNode) node).indexes) {
+                if (index instanceof LookupNode.Index) {
+                    count += countNodes(((LookupNode.Index) index).expression);
+                }
+            }
+        } else if (node instanceof AttributeNode) {
+            count += countNodes(((AttributeNode) node).key) + countNodes(((AttributeNode) node).value);
+        } else if (node instanceof KeyValueNode) {
+            count += countNodes(((KeyValueNode) node).value);
+        } else if (node instanceof ComparingExpressionNode) {
+            count += countNodes(((ComparingExpressionNode) node).lhs)
+                    + countNodes(((ComparingExpressionNode) node).rhs);
+        } else if (node instanceof EqNode) {
+            count += countNodes(((EqNode) node).lhs) + countNodes(((EqNode) node).rhs);
+        } else if (node instanceof NEqNode) {
+            count += countNodes(((NEqNode) node).lhs) + countNodes(((NEqNode) node).rhs);
+        } else if (node instanceof ContainsNode) {
+            count += countNodes(((ContainsNode) node).lhs) + countNodes(((ContainsNode) node).rhs);
+        } else if (node instanceof AndNode) {
+            count += countNodes(((AndNode) node).lhs) + countNodes(((AndNode) node).rhs);
+        } else if (node instanceof OrNode) {
+            count += countNodes(((OrNode) node).lhs) + countNodes(((OrNode) node).rhs);
+        }
+        return count;
+    }
+
+    private void optimizeBlock(BlockNode block) {
+        List<LNode> children = new ArrayList<>();
+        for (LNode child : block.getChildren()) {
+            LNode optimized = optimizeNode(child);
+            if (optimized == null) {
+                continue;
+            }
+            if (optimized != child && optimized instanceof BlockNode && !optimized.mayInterrupt()) {
+                // the taken branch of a tag: rendering its children in place renders the same
+                for (LNode grandChild : ((BlockNode) optimized).getChildren()) {
+                    addMerged(children, grandChild);
+                }
+            } else {
+                addMerged(children, optimized);
+            }
+        }
+        block.setChildren(children);
+    }
+
+    private static void addMerged(List<LNode> children, LNode node) {
+        int last = children.size() - 1;
+        if (isText(node) && last >= 0 && isText(children.get(last))) {
+            String text = (String) children.get(last).render(null) + node.render(null);
+            children.set(last, new AtomNode(text));
+        } else {
+            children.add(node);
+        }
+    }
+
+    private static boolean isText(LNode node) {
+        return node instanceof AtomNode && node.render(null) instanceof String;
+    }
+
+    // returns the node that replaces the given one, or null when it renders nothing
+    private LNode optimizeNode(LNode node) {
+        if (node instanceof BlockNode) {
+            optimizeBlock((BlockNode) node);
+            return node;
+        }
+        if (node instanceof OutputNode) {
+            OutputNode output = (OutputNode) node;
+            return output.filters.isEmpty() && isText(output.expression) ? output.expression : node;
+        }
+        if (!(node instanceof InsertionNode)) {
+            return node;
+        }
+
+        InsertionNode insertion = (InsertionNode) node;
+        LNode[] tokens = insertion.tokens;
+        for (LNode token : tokens) {
+            if (token instanceof BlockNode) {
+                optimizeBlock((BlockNode) token);
+            }
+        }
+
+        Class<?> type = insertion.insertion.getClass();
+        if (type == If.class || type == Unless.class) {
+            return selectBranch(insertion, type == Unless.class);
+        }
+        if (type == Case.class) {
+            return selectCase(insertion);
+        }
+        return node;
+    }
+
+    private LNode selectBranch(InsertionNode insertion, boolean unless) {
+        LNode[] tokens = insertion.tokens;
+        List<LNode> kept = new ArrayList<>();
+        for (int i = 0; i < tokens.length - 1; i += 2) {
+            LNode condition = fold(tokens[i]);
+            if (condition instanceof AtomNode) {
+                boolean taken = asBoolean(condition.render(context)) != unless;
+                if (!taken) {
+                    continue;
+                }
+                kept.add(condition);
+                kept.add(tokens[i + 1]);
+                // the branches after this one cannot be taken
+                break;
+            }
+            kept.add(condition);
+            kept.add(tokens[i + 1]);
+        }
+
+        if (kept.isEmpty()) {
+            return null;
+        }
+        if (kept.get(0) instanceof AtomNode) {
+            return kept.get(1);
+        }
+        return new InsertionNode(insertion.insertion, kept.toArray(new LNode[0]));
+    }
+
+    // mirrors Case#selectBlock, for a case over literals only
+    private LNode selectCase(InsertionNode insertion) {
+        LNode[] tokens = insertion.tokens;
+        for (int i = 0; i < tokens.length; i++) {
+            if (!(tokens[i] instanceof BlockNode)) {
+                tokens[i] = fold(tokens[i]);
+                if (!(tokens[i] instanceof AtomNode)) {
+                    return insertion;
+                }
+            }
+        }
+
+        Object condition = tokens[0].render(context);
+        for (int i = 1; i < tokens.length; i++) {
+            LNode node = tokens[i];
+            if (i == tokens.length - 1 && node instanceof BlockNode) {
+                return node;
+            }
+            boolean hit = false;
+            while (!(node instanceof BlockNode)) {
+                if (areEqual(condition, node.render(context))) {
+                    hit = true;
+                }
+                i++;
+                node = tokens[i];
+            }
+            if (hit) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    // replaces an expression over literals by its value
+    private LNode fold(LNode node) {
+        if (node instanceof AndNode) {
+            AndNode and = (AndNode) node;
+            and.lhs = fold(and.lhs);
+            and.rhs = fold(and.rhs);
+            if (and.lhs instanceof AtomNode && !asBoolean(and.lhs.render(context))) {
+                return new AtomNode(false);
+            }
+            return and.lhs instanceof AtomNode && and.rhs instanceof AtomNode ? evaluate(node) : node;
+        }
+        if (node instanceof OrNode) {
+            OrNode or = (OrNode) node;
+            or.lhs = fold(or.lhs);
+            or.rhs = fold(or.rhs);
+            if (or.lhs instanceof AtomNode && asBoolean(or.lhs.render(context))) {
+                return new AtomNode(true);
+            }
+            return or.lhs instanceof AtomNode && or.rhs instanceof AtomNode ? evaluate(node) : node;
+        }
+
+        List<LNode> operands;
+        if (node instanceof EqNode) {
+            operands = Arrays.asList(((EqNode) node).lhs, ((EqNode) node).rhs);
+        } else if (node instanceof NEqNode) {
+            operands = Arrays.asList(((NEqNode) node).lhs, ((NEqNode) node).rhs);
+        } else if (node instanceof ComparingExpressionNode) {
+            operands = Arrays.asList(((ComparingExpressionNode) node).lhs,
+                    ((ComparingExpressionNode) node).rhs);
+        } else if (node instanceof ContainsNode) {
+            operands = Arrays.asList(((ContainsNode) node).lhs, ((ContainsNode) node).rhs);
+        } else {
+            return node;
+        }
+        for (LNode operand : operands) {
+            if (!(operand instanceof AtomNode)) {
+                return node;
+            }
+        }
+        return evaluate(node);
+    }
+
+    private LNode evaluate(LNode node) {
+        if (context == null) {
+            context = new TemplateContext(parser, new LinkedHashMap<>());
+        }
+        int errors = context.errors().size();
+        Object value;
+        try {
+            value = node.render(context);
+        } catch (RuntimeException e) {
+            // keep the error for the render
+            return node;
+        }
+        if (context.errors().size() > errors) {
+            // also when it is only recorded
+            return node;
+        }
+        return value instanceof Boolean ? new AtomNode(value) : node;
+    }
+}
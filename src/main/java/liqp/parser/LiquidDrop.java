@@ -0,0 +1,27 @@
+package liqp.parser;
+
+/**
+ * A {@link LiquidSupport} that also reads its properties one by one, so that a lookup like
+ * {@code {{ forloop.index }}} does not build the whole {@link #toLiquid()} map. The loop objects of
+ * {@code for} and {@code tablerow} are drops, as their properties change at each iteration.
+ * <p/>
+ * {@link #getProperty(String)} must agree with {@link #toLiquid()}, which is still used when the drop
+ * is rendered, converted or passed to a filter.
+ */
+public interface LiquidDrop extends LiquidSupport {
+
+    /**
+     * The value of a property that the drop does not have.
+     */
+    Object UNDEFINED = new Object() {
+        @Override
+        public String toString() {
+            return "UNDEFINED";
+        }
+    };
+
+    /**
+     * Returns the value of the given property, or {@link #UNDEFINED} when there is no such property.
+     */
+    Object getProperty(String name);
+}
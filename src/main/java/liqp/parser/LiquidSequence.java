@@ -0,0 +1,23 @@
+package liqp.parser;
+
+/**
+ * A sequence of items that is iterated lazily by {@code {% for %}} loops, such as the rows of a
+ * database cursor or the pages of a paginated API, so that they do not have to be loaded in memory
+ * before rendering.
+ * <p/>
+ * {@link java.util.Iterator}s and {@link java.util.stream.Stream}s are iterated lazily as well; this
+ * interface only adds the optional {@link #size()}. Other {@link Iterable}s are not treated as
+ * sequences, implement this interface to have them iterated lazily. Array filters (such as
+ * {@code sort} or {@code join}) still load all items of a sequence in memory.
+ */
+public interface LiquidSequence<T> extends Iterable<T> {
+
+    /**
+     * Returns the number of items of this sequence, or {@code -1} when it is not known up front. When
+     * it is not known, {@code forloop.length} and {@code forloop.rindex} load the remaining items of the
+     * loop in memory to count them, and only when a template reads them.
+     */
+    default int size() {
+        return -1;
+    }
+}
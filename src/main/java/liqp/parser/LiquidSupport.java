@@ -8,11 +8,9 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import liqp.TemplateContext;
-import liqp.spi.BasicTypesSupport;
 import liqp.spi.SPIHelper;
 
 import java.io.IOException;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -81,41 +79,14 @@ public interface LiquidSupport extends Inspectable {
             if (mapper == null) {
                 throw new RuntimeException("ObjectMapper required here");
             }
-            ObjectMapper copy = SPIHelper.applyTypeReferencing(mapper.copy());
+            ObjectMapper copy = SPIHelper.getTypeReferencingMapper(mapper);
             ObjectNode value = copy.convertValue(variables, ObjectNode.class);
-            Map<String, Object> convertedValue = copy.convertValue(value, MAP_TYPE_REF);
-            visitMap(convertedValue);
-            return convertedValue;
+            return copy.convertValue(value, MAP_TYPE_REF);
         }
 
         @Override
         public Map<String, Object> toLiquid() {
             return objectToMap(mapper, variable);
         }
-
-        static void visitMap(Map<?, ?> map) {
-            for (Map.Entry entry: map.entrySet()) {
-                Object value = BasicTypesSupport.restoreObject(entry.getValue());
-                visit(value);
-                entry.setValue(value);
-            }
-        }
-        static void visitList(List list) {
-            for (int i = 0; i< list.size(); i++) {
-                Object object = list.get(i);
-                Object value = BasicTypesSupport.restoreObject(object);
-                visit(value);
-                //noinspection unchecked
-                list.set(i, value);
-            }
-        }
-        static void visit(Object object) {
-            if (object instanceof Map) {
-                visitMap((Map)object);
-            } if (object instanceof List) {
-                visitList((List)object);
-            }
-        }
-
     }
 }
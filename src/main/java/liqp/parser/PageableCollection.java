@@ -0,0 +1,36 @@
+package liqp.parser;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A collection that can fetch a window of its items, such as a table or a paginated API. The
+ * {@code {% for %}} and {@code {% tablerow %}} tags only ask it for the items within their
+ * {@code offset} and {@code limit}, instead of fetching all items and slicing them afterwards.
+ * <p/>
+ * Other uses, such as array filters, iterate all items, see {@link #iterator()}.
+ */
+public interface PageableCollection<T> extends LiquidSequence<T> {
+
+    /**
+     * Returns the total number of items of this collection.
+     */
+    @Override
+    int size();
+
+    /**
+     * Returns the items of this collection from the given offset on.
+     *
+     * @param offset
+     *            the index of the first item, at least {@code 0} and at most {@link #size()}.
+     * @param limit
+     *            the maximum number of items, at least {@code 0}.
+     * @return at most {@code limit} items.
+     */
+    List<T> slice(int offset, int limit);
+
+    @Override
+    default Iterator<T> iterator() {
+        return slice(0, size()).iterator();
+    }
+}
@@ -0,0 +1,183 @@
+package liqp.parser;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.ser.BeanSerializer;
+
+import liqp.spi.SPIHelper;
+
+/**
+ * Reads the properties of {@link Inspectable} objects directly, instead of converting the whole object
+ * to a map through Jackson.
+ * <p/>
+ * The properties of a class are looked up once, with the same Jackson introspection (and so the same
+ * names, such as those of {@code @JsonProperty}) as the conversion, and bound to a
+ * {@link MethodHandle} of their getter or field. Only properties that the conversion would leave as
+ * they are can be read directly: classes with a custom serializer, properties with serialization
+ * annotations, and values other than strings, booleans and numbers (except {@code BigDecimal}, which
+ * the conversion normalizes) are left to the Jackson conversion, see {@link #UNRESOLVED}.
+ */
+public final class PropertyAccessors {
+
+    /**
+     * Returned by {@link #get(Object, String)} when the property cannot be read directly.
+     */
+    public static final Object UNRESOLVED = new Object();
+
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    // weakly keyed by the (identity of the) mapper
+    private static final Map<ObjectMapper, PropertyAccessors> instances =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final ObjectMapper mapper;
+
+    private final ClassValue<Map<String, MethodHandle>> accessors = new ClassValue<Map<String, MethodHandle>>() {
+        @Override
+        protected Map<String, MethodHandle> computeValue(Class<?> type) {
+            return introspect(type);
+        }
+    };
+
+    private PropertyAccessors(ObjectMapper mapper) {
+        this.mapper = SPIHelper.getTypeReferencingMapper(mapper);
+    }
+
+    /**
+     * Returns the accessors that follow the conversions of the given mapper. Renders read them from
+     * {@link liqp.ParseSettings#getPropertyAccessors()}, which looks them up once.
+     */
+    public static PropertyAccessors forMapper(ObjectMapper mapper) {
+        return instances.computeIfAbsent(mapper, PropertyAccessors::new);
+    }
+
+    /**
+     * Returns the value of the property of the given object, as it would be in the map it is converted
+     * to by {@link LiquidSupport.LiquidSupportFromInspectable}.
+     *
+     * @param object
+     *            the object.
+     * @param name
+     *            the name of the property.
+     * @return the value of the property, or {@link #UNRESOLVED} if it must be read from the converted
+     *         map instead.
+     */
+    public Object get(Object object, String name) {
+        MethodHandle accessor = accessors.get(object.getClass()).get(name);
+        if (accessor == null) {
+            return UNRESOLVED;
+        }
+
+        Object value;
+        try {
+            value = (Object) accessor.invokeExact(object);
+        } catch (RuntimeException | Error e) {
+            // reported as it is, rather than calling the getter again in the conversion
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+
+        if (value == null || value instanceof String || value instanceof Boolean || value instanceof Integer
+                || value instanceof Long || value instanceof Double || value instanceof Float
+                || value instanceof BigInteger) {
+            return value;
+        } else if (value instanceof Short || value instanceof Byte) {
+            return ((Number) value).intValue();
+        } else if (value instanceof Character) {
+            return value.toString();
+        }
+        return UNRESOLVED;
+    }
+
+    private Map<String, MethodHandle> introspect(Class<?> type) {
+        if (type.isArray() || type.isPrimitive() || LiquidSupport.class.isAssignableFrom(type)) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, MethodHandle> accessors = new HashMap<>();
+        try {
+            JsonSerializer<Object> serializer = mapper.getSerializerProviderInstance().findValueSerializer(type);
+            if (serializer.getClass() != BeanSerializer.class) {
+                // a custom (or no) serializer, the conversion may produce anything
+                return Collections.emptyMap();
+            }
+
+            BeanDescription description = mapper.getSerializationConfig().introspect(mapper.constructType(
+                    type));
+            if (description.getClassAnnotations().size() > 0 || description.findAnyGetter() != null) {
+                return Collections.emptyMap();
+            }
+
+            for (BeanPropertyDefinition property : description.findProperties()) {
+                AnnotatedMember member = property.getAccessor();
+                if (member == null || !property.couldSerialize() || !isScalar(member.getRawType())
+                        || hasSerializationAnnotations(member)) {
+                    continue;
+                }
+                MethodHandle accessor = bind(member.getMember());
+                if (accessor != null) {
+                    accessors.put(property.getName(), accessor);
+                }
+            }
+        } catch (Exception e) {
+            // not a plain bean
+            return Collections.emptyMap();
+        }
+        return accessors;
+    }
+
+    // the values the conversion keeps as they are (or turns into an int or a string), declared so that
+    // the accessor is only ever called once per lookup; a BigDecimal is normalized by the conversion, so
+    // it is left to it
+    private static boolean isScalar(Class<?> type) {
+        return type.isPrimitive() || type == String.class || type == Boolean.class || type == Integer.class
+                || type == Long.class || type == Short.class || type == Byte.class || type == Double.class
+                || type == Float.class || type == Character.class || type == BigInteger.class;
+    }
+
+    // only @JsonProperty keeps the value as it is
+    private static boolean hasSerializationAnnotations(AnnotatedMember member) {
+        int annotations = member.getAllAnnotations().size();
+        if (member.hasAnnotation(com.fasterxml.jackson.annotation.JsonProperty.class)) {
+            annotations--;
+        }
+        return annotations > 0;
+    }
+
+    private static MethodHandle bind(Member member) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handle;
+            if (member instanceof Method) {
+                ((AccessibleObject) member).setAccessible(true);
+                handle = lookup.unreflect((Method) member);
+            } else if (member instanceof Field) {
+                ((AccessibleObject) member).setAccessible(true);
+                handle = lookup.unreflectGetter((Field) member);
+            } else {
+                return null;
+            }
+            return handle.asType(ACCESSOR_TYPE);
+        } catch (Exception e) {
+            // inaccessible, left to the conversion
+            return null;
+        }
+    }
+}
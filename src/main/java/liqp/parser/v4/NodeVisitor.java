@@ -4,6 +4,7 @@ import liqp.Insertion;
 import liqp.Insertions;
 import liqp.LValue;
 import liqp.ParseSettings;
+import liqp.VariableLayout;
 import liqp.exceptions.LiquidException;
 import liqp.filters.Filter;
 import liqp.filters.Filters;
@@ -26,6 +27,7 @@ public class NodeVisitor extends LiquidParserBaseVisitor<LNode> {
   private Filters filters;
   private final ParseSettings parseSettings;
   private boolean isRootBlock = true;
+  private final VariableLayout layout = new VariableLayout();
 
   @Deprecated
   public NodeVisitor(Map<String, Insertion> insertions, Map<String, Filter> filters, ParseSettings parseSettings) {
@@ -48,6 +50,13 @@ public class NodeVisitor extends LiquidParserBaseVisitor<LNode> {
     this.parseSettings = parseSettings;
   }
 
+  /**
+   * Returns the layout of the variables of the template visited by this visitor.
+   */
+  public VariableLayout getLayout() {
+    return layout;
+  }
+
   // parse
   //  : block EOF
   //  ;
@@ -270,7 +279,7 @@ public class NodeVisitor extends LiquidParserBaseVisitor<LNode> {
     List<LNode> expressions = new ArrayList<LNode>();
     expressions.add(new AtomNode(true));
 
-    expressions.add(new AtomNode(ctx.id().getText()));
+    expressions.add(new AtomNode(slotted(ctx.id().getText())));
     expressions.add(visit(ctx.lookup()));
 
     expressions.add(visitBlock(ctx.for_block().a));
@@ -296,7 +305,7 @@ public class NodeVisitor extends LiquidParserBaseVisitor<LNode> {
     List<LNode> expressions = new ArrayList<LNode>();
     expressions.add(new AtomNode(false));
 
-    expressions.add(new AtomNode(ctx.id().getText()));
+    expressions.add(new AtomNode(slotted(ctx.id().getText())));
     expressions.add(visit(ctx.from));
     expressions.add(visit(ctx.to));
 
@@ -350,7 +359,7 @@ public class NodeVisitor extends LiquidParserBaseVisitor<LNode> {
 
     List<LNode> expressions = new ArrayList<LNode>();
 
-    expressions.add(new AtomNode(ctx.id().getText()));
+    expressions.add(new AtomNode(slotted(ctx.id().getText())));
     expressions.add(visit(ctx.lookup()));
     expressions.add(visitBlock(ctx.block()));
 
@@ -367,7 +376,7 @@ public class NodeVisitor extends LiquidParserBaseVisitor<LNode> {
   //  ;
   @Override
   public LNode visitCapture_tag_Id(Capture_tag_IdContext ctx) {
-    return new InsertionNode(insertions.get("capture"), new AtomNode(ctx.id().getText()), visitBlock(ctx.block()));
+    return new InsertionNode(insertions.get("capture"), new AtomNode(slotted(ctx.id().getText())), visitBlock(ctx.block()));
   }
 
   // capture_tag
@@ -507,7 +516,7 @@ public class NodeVisitor extends LiquidParserBaseVisitor<LNode> {
   @Override
   public LNode visitAssignment(AssignmentContext ctx) {
 
-    AtomNode idNode = new AtomNode(ctx.id().getText());
+    AtomNode idNode = new AtomNode(slotted(ctx.id().getText()));
     LNode exprNode = visit(ctx.expr());
     List<LNode> allNodes = new ArrayList<>();
 
@@ -709,7 +718,7 @@ public class NodeVisitor extends LiquidParserBaseVisitor<LNode> {
   @Override
   public LookupNode visitLookup_id_indexes(Lookup_id_indexesContext ctx) {
 
-    LookupNode node = new LookupNode(ctx.id().getText());
+    LookupNode node = new LookupNode(ctx.id().getText(), layout);
 
     for (IndexContext index : ctx.index()) {
 
@@ -731,7 +740,7 @@ public class NodeVisitor extends LiquidParserBaseVisitor<LNode> {
   //  ;
   @Override
   public LookupNode visitLookup_Str(Lookup_StrContext ctx) {
-    return new LookupNode(strip(ctx.Str().getText()));
+    return new LookupNode(strip(ctx.Str().getText()), layout);
   }
 
   // lookup
@@ -747,6 +756,12 @@ public class NodeVisitor extends LiquidParserBaseVisitor<LNode> {
     return new AtomNode(strip(str.getText()));
   }
 
+  // numbers the name of a variable that is set by a tag, see VariableLayout
+  private String slotted(String name) {
+    layout.register(name);
+    return name;
+  }
+
   private static String strip(String str) {
     return str.substring(1, str.length() - 1);
   }
@@ -0,0 +1,181 @@
+package liqp.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import liqp.ParseSettings;
+
+/**
+ * A {@link QueryableCollection} of maps held in memory, with hash indexes on some of their properties.
+ * Conditions on an indexed property look up the matching items instead of checking all of them.
+ * <p/>
+ * Values are equal when they convert to equal {@link JsonNode}s, as for the {@code where} filter on a
+ * list of maps; so {@code 1}, {@code 1L} and {@code 1.0} are not equal, and a missing property is equal
+ * to {@code nil}. The items are a snapshot: changes to the given collection are not seen.
+ */
+public final class InMemoryQueryableCollection implements QueryableCollection<Map<String, ?>> {
+
+    // the normalized null, as index key
+    private static final Object NULL = new Object();
+
+    private final ObjectMapper mapper;
+    private final List<Map<String, ?>> items;
+
+    // property -> value (normalized) -> positions of the items, ascending
+    private final Map<String, Map<Object, List<Integer>>> indexes = new HashMap<>();
+
+    /**
+     * Creates a new instance that compares values with the mapper of the default parse settings.
+     *
+     * @param items
+     *            the items.
+     * @param indexedProperties
+     *            the properties to index.
+     */
+    public InMemoryQueryableCollection(Collection<? extends Map<String, ?>> items, String... indexedProperties) {
+        this(ParseSettings.DEFAULT.mapper, items, indexedProperties);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param mapper
+     *            the mapper that converts values to compare them, which should be the one of the parse
+     *            settings the templates are rendered with.
+     * @param items
+     *            the items.
+     * @param indexedProperties
+     *            the properties to index.
+     */
+    public InMemoryQueryableCollection(ObjectMapper mapper, Collection<? extends Map<String, ?>> items,
+            String... indexedProperties) {
+        this.mapper = mapper;
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+        for (String property : indexedProperties) {
+            Map<Object, List<Integer>> index = new HashMap<>();
+            for (int i = 0; i < this.items.size(); i++) {
+                Object key = normalize(this.items.get(i).get(property));
+                index.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            }
+            indexes.put(property, index);
+        }
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public Iterator<Map<String, ?>> iterator() {
+        return items.iterator();
+    }
+
+    @Override
+    public List<?> fetch(Query query) {
+        List<Map<String, ?>> selected = select(query.getConditions());
+
+        String sortProperty = query.getSortProperty();
+        if (sortProperty != null) {
+            // stable, as the sort filter
+            selected.sort((a, b) -> compare(a.get(sortProperty), b.get(sortProperty)));
+        }
+        if (query.isReversed()) {
+            Collections.reverse(selected);
+        }
+
+        List<Object> result = new ArrayList<>();
+        int limit = query.getLimit() > -1 ? query.getLimit() : Integer.MAX_VALUE;
+        for (Map<String, ?> item : selected) {
+            if (result.size() >= limit) {
+                break;
+            }
+            Object value = query.getMapProperty() == null ? item : item.get(query.getMapProperty());
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int count(Query query) {
+        List<Map<String, ?>> selected = select(query.getConditions());
+        int count = 0;
+        for (Map<String, ?> item : selected) {
+            if (query.getMapProperty() == null || item.get(query.getMapProperty()) != null) {
+                count++;
+            }
+        }
+        return query.getLimit() > -1 ? Math.min(count, query.getLimit()) : count;
+    }
+
+    // the items matching all conditions, in their order
+    private List<Map<String, ?>> select(List<Query.Condition> conditions) {
+        // start from the smallest matching index entry, if any
+        List<Integer> positions = null;
+        for (Query.Condition condition : conditions) {
+            Map<Object, List<Integer>> index = indexes.get(condition.getProperty());
+            if (index != null && !condition.isTruthy()) {
+                List<Integer> matching = index.getOrDefault(normalize(condition.getValue()),
+                        Collections.emptyList());
+                if (positions == null || matching.size() < positions.size()) {
+                    positions = matching;
+                }
+            }
+        }
+
+        List<Map<String, ?>> selected = new ArrayList<>();
+        if (positions == null) {
+            for (Map<String, ?> item : items) {
+                if (matches(item, conditions)) {
+                    selected.add(item);
+                }
+            }
+        } else {
+            for (int position : positions) {
+                Map<String, ?> item = items.get(position);
+                if (matches(item, conditions)) {
+                    selected.add(item);
+                }
+            }
+        }
+        return selected;
+    }
+
+    private boolean matches(Map<String, ?> item, List<Query.Condition> conditions) {
+        for (Query.Condition condition : conditions) {
+            Object value = item.get(condition.getProperty());
+            if (condition.isTruthy()) {
+                if (value == null || Boolean.FALSE.equals(value)) {
+                    return false;
+                }
+            } else if (!normalize(value).equals(normalize(condition.getValue()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the value as compared by LiquidWhereImpl
+    private Object normalize(Object value) {
+        JsonNode node = value == null ? null : mapper.convertValue(value, JsonNode.class);
+        return node == null || node.isNull() ? NULL : node;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compare(Object a, Object b) {
+        if (a == null || b == null) {
+            throw new RuntimeException("Liquid error: comparison of Hash with Hash failed");
+        }
+        return ((Comparable) a).compareTo(b);
+    }
+}
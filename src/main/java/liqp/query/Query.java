@@ -0,0 +1,257 @@
+package liqp.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import liqp.parser.LiquidSequence;
+
+/**
+ * The description of what the filters applied to a {@link QueryableCollection} would do, in this order:
+ * <ol>
+ * <li>keep the items that match all {@link #getConditions() conditions} ({@code where}),</li>
+ * <li>order them by a {@link #getSortProperty() property} ({@code sort}),</li>
+ * <li>{@link #isReversed() reverse} their order ({@code last}),</li>
+ * <li>replace them by the value of a {@link #getMapProperty() property}, dropping {@code nil} values
+ * ({@code map}),</li>
+ * <li>{@link #getLimit() limit} their number ({@code first} and {@code last}).</li>
+ * </ol>
+ * A query is immutable, each filter returns a new one. A filter that cannot be described (such as a
+ * {@code where} after a {@code map}) runs on the fetched items instead.
+ * <p/>
+ * A query is itself a {@link LiquidSequence}, which is fetched each time it is iterated.
+ */
+public final class Query implements LiquidSequence<Object> {
+
+    /**
+     * A condition of a {@code where} filter.
+     */
+    public static final class Condition {
+
+        private final String property;
+        private final Object value;
+        private final boolean truthy;
+
+        private Condition(String property, Object value, boolean truthy) {
+            this.property = property;
+            this.value = value;
+            this.truthy = truthy;
+        }
+
+        /**
+         * Returns the property of the items that is checked.
+         */
+        public String getProperty() {
+            return property;
+        }
+
+        /**
+         * Returns the value the property must be equal to, unless {@link #isTruthy()}.
+         */
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * Returns true iff the property must only be truthy (neither {@code nil} nor {@code false}), as
+         * in {@code where: "available"}.
+         */
+        public boolean isTruthy() {
+            return truthy;
+        }
+
+        @Override
+        public String toString() {
+            return truthy ? property : property + " == " + value;
+        }
+    }
+
+    private final QueryableCollection<?> source;
+    private final List<Condition> conditions;
+    private final String sortProperty;
+    private final boolean reversed;
+    private final int limit;
+    private final String mapProperty;
+
+    private Query(QueryableCollection<?> source, List<Condition> conditions, String sortProperty,
+            boolean reversed, int limit, String mapProperty) {
+        this.source = source;
+        this.conditions = conditions;
+        this.sortProperty = sortProperty;
+        this.reversed = reversed;
+        this.limit = limit;
+        this.mapProperty = mapProperty;
+    }
+
+    /**
+     * Returns a query of all items of the given collection.
+     */
+    public static Query of(QueryableCollection<?> source) {
+        return new Query(source, Collections.emptyList(), null, false, -1, null);
+    }
+
+    /**
+     * Returns the given value as a query, when it is a query or a queryable collection.
+     *
+     * @return the query, or {@code null}.
+     */
+    public static Query from(Object value) {
+        if (value instanceof Query) {
+            return (Query) value;
+        }
+        if (value instanceof QueryableCollection) {
+            return of((QueryableCollection<?>) value);
+        }
+        return null;
+    }
+
+    /**
+     * Returns a query that also requires the given property to be truthy, or {@code null} when this
+     * query cannot describe it.
+     */
+    public Query where(String property) {
+        return where(new Condition(property, null, true));
+    }
+
+    /**
+     * Returns a query that also requires the given property to be equal to the given value, or
+     * {@code null} when this query cannot describe it.
+     */
+    public Query where(String property, Object value) {
+        return where(new Condition(property, value, false));
+    }
+
+    private Query where(Condition condition) {
+        // the conditions come before the order, the projection and the limit
+        if (reversed || limit > -1 || mapProperty != null) {
+            return null;
+        }
+        List<Condition> more = new ArrayList<>(conditions);
+        more.add(condition);
+        return new Query(source, Collections.unmodifiableList(more), sortProperty, reversed, limit,
+                mapProperty);
+    }
+
+    /**
+     * Returns a query ordered by the given property, or {@code null} when this query cannot describe it.
+     */
+    public Query sort(String property) {
+        if (property == null || sortProperty != null || reversed || limit > -1 || mapProperty != null) {
+            return null;
+        }
+        return new Query(source, conditions, property, false, -1, null);
+    }
+
+    /**
+     * Returns a query of the values of the given property, or {@code null} when this query cannot
+     * describe it.
+     */
+    public Query map(String property) {
+        if (property == null || mapProperty != null || limit > -1) {
+            return null;
+        }
+        return new Query(source, conditions, sortProperty, reversed, limit, property);
+    }
+
+    /**
+     * Returns the first item of this query, or {@code null}.
+     */
+    public Object first() {
+        return single(new Query(source, conditions, sortProperty, reversed, 1, mapProperty));
+    }
+
+    /**
+     * Returns the last item of this query, or {@code null}.
+     */
+    public Object last() {
+        return single(new Query(source, conditions, sortProperty, !reversed, 1, mapProperty));
+    }
+
+    private static Object single(Query query) {
+        List<?> items = query.fetch();
+        return items.isEmpty() ? null : items.get(0);
+    }
+
+    /**
+     * Runs this query.
+     */
+    public List<?> fetch() {
+        return source.fetch(this);
+    }
+
+    /**
+     * Returns the number of items this query would fetch.
+     */
+    public int count() {
+        return source.count(this);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Iterator<Object> iterator() {
+        return (Iterator<Object>) fetch().iterator();
+    }
+
+    /**
+     * Returns the queried collection.
+     */
+    public QueryableCollection<?> getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the conditions all items must match.
+     */
+    public List<Condition> getConditions() {
+        return conditions;
+    }
+
+    /**
+     * Returns the property the items are ordered by, or {@code null} when they keep the order of the
+     * collection. Items are ordered as by the {@code sort} filter: a {@code nil} value is an error.
+     */
+    public String getSortProperty() {
+        return sortProperty;
+    }
+
+    /**
+     * Returns true iff the order of the items is reversed, after they are sorted.
+     */
+    public boolean isReversed() {
+        return reversed;
+    }
+
+    /**
+     * Returns the maximum number of items, after the projection, or {@code -1}.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the property the items are replaced by, or {@code null}.
+     */
+    public String getMapProperty() {
+        return mapProperty;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Query{");
+        builder.append("where=").append(conditions);
+        if (sortProperty != null) {
+            builder.append(", sort=").append(sortProperty);
+        }
+        if (reversed) {
+            builder.append(", reversed");
+        }
+        if (limit > -1) {
+            builder.append(", limit=").append(limit);
+        }
+        if (mapProperty != null) {
+            builder.append(", map=").append(mapProperty);
+        }
+        return builder.append('}').toString();
+    }
+}
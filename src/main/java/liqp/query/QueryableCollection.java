@@ -0,0 +1,46 @@
+package liqp.query;
+
+import java.util.List;
+
+import liqp.parser.LiquidSequence;
+
+/**
+ * A collection that runs queries itself, such as an indexed store or an embedded database. The
+ * {@code where}, {@code sort} and {@code map} filters do not iterate it, but describe what they would
+ * do in a {@link Query}; the query only runs when its items are needed, once, by {@link #fetch(Query)}
+ * or {@link #count(Query)}. For example:
+ *
+ * <pre>
+ * {{ products | where: "available", true | sort: "price" | map: "title" | first }}
+ * </pre>
+ *
+ * runs one query that selects the available products, orders them by price, and takes the title of
+ * the first one. See {@link InMemoryQueryableCollection} for a reference implementation.
+ * <p/>
+ * Queries are only built in the (default) Liquid flavor: the Jekyll {@code where} compares differently,
+ * and iterates the collection instead.
+ */
+public interface QueryableCollection<T> extends LiquidSequence<T> {
+
+    /**
+     * Runs the given query.
+     *
+     * @param query
+     *            the query, whose {@link Query#getSource() source} is this collection.
+     * @return the items that match the query, in its order, limited and projected as described by it.
+     */
+    List<?> fetch(Query query);
+
+    /**
+     * Returns the number of items that the given query would fetch. By default, this is the
+     * {@link #size()} of this collection when it is known and the query neither selects nor projects
+     * items, and the size of the fetched items otherwise.
+     */
+    default int count(Query query) {
+        int size = size();
+        if (size >= 0 && query.getConditions().isEmpty() && query.getMapProperty() == null) {
+            return query.getLimit() > -1 ? Math.min(size, query.getLimit()) : size;
+        }
+        return fetch(query).size();
+    }
+}
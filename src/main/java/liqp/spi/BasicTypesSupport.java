@@ -4,34 +4,27 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import liqp.filters.date.CustomDateFormatRegistry;
 import liqp.filters.date.CustomDateFormatSupport;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class BasicTypesSupport implements TypesSupport {
 
-    private static ThreadLocal<Map<String, Object>> local = new ThreadLocal<Map<String, Object>>(){
-        @Override
-        protected Map<String, Object> initialValue() {
-            return new ConcurrentHashMap<>();
-        }
-    };
-
-    
     protected<T> void registerType(SimpleModule module, final Class<T> clazz) {
-        // we put the ref to object here for restoring it by the ref later
-        // so we will preserve the object in case of eager evaluation
-        // and will put it back when needed
+        // the object itself is written as an embedded object, which the conversions through a TokenBuffer
+        // (to a JsonNode as a POJONode, and from there to a Map) carry along as it is, so the object is
+        // preserved in case of eager evaluation
         module.addSerializer(new StdSerializer<T>(clazz) {
             @Override
             public void serialize(T value, JsonGenerator gen, SerializerProvider provider) throws IOException {
-                gen.writeStartObject();
-                gen.writeBooleanField("@supportedTypeMarker", true);
-                gen.writeStringField("@ref", createReference(value));
-                gen.writeEndObject();
+                if (gen instanceof TokenBuffer) {
+                    gen.writeEmbeddedObject(value);
+                } else {
+                    // not a conversion, there is nothing to carry the object along
+                    gen.writeString(String.valueOf(value));
+                }
             }
         });
     }
@@ -42,37 +35,20 @@ public abstract class BasicTypesSupport implements TypesSupport {
         }
     }
 
+    /**
+     * @deprecated objects are no longer replaced by references during the conversion, this returns the
+     *             given object.
+     */
+    @Deprecated
     public static Object restoreObject(Object obj) {
-        if (! (obj instanceof Map)) {
-            return obj;
-        }
-        //noinspection rawtypes
-        Map mapObj = (Map) obj;
-        if (!Boolean.TRUE.equals(mapObj.get("@supportedTypeMarker"))) {
-            return obj;
-        }
-        Object ref = mapObj.get("@ref");
-        if (!(ref instanceof String)) {
-            // improperly formatted objects will be returned as is
-            return obj;
-        }
-        return getByReference((String) ref);
-    }
-
-
-
-    public static String createReference(Object obj) {
-        String key = Thread.currentThread().hashCode() + ":" + System.currentTimeMillis() + ":" + obj.hashCode();
-        local.get().put(key, obj);
-        return key;
+        return obj;
     }
 
-    public static <TT> TT getByReference(String key) {
-        return (TT)local.get().remove(key);
+    /**
+     * @deprecated objects are no longer replaced by references during the conversion, there is nothing
+     *             to clear.
+     */
+    @Deprecated
+    public static void clearReferences() {
     }
-
-    public static void clearReferences(){
-        local.get().clear();
-    }
-
 }
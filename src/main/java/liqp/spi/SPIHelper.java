@@ -2,15 +2,24 @@ package liqp.spi;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.ServiceLoader;
 
 public class SPIHelper {
 
     private static volatile List<TypesSupport> typeSupporters;
 
+    // the type referencing copies of the mappers, weakly keyed by the (identity of the) original mapper;
+    // copied on write, so that lookups take no lock
+    private static volatile Map<MapperKey, ObjectMapper> typeReferencingMappers = Collections.emptyMap();
+    private static final Object LOCK = new Object();
+
     public static ObjectMapper applyTypeReferencing(ObjectMapper mapper) {
         List<TypesSupport> providers = findProviders();
         for (TypesSupport el: providers) {
@@ -19,6 +28,35 @@ public class SPIHelper {
         return mapper;
     }
 
+    /**
+     * Returns a copy of the given mapper with type referencing applied, see
+     * {@link #applyTypeReferencing(ObjectMapper)}. The copy is made once per mapper and reused after,
+     * which keeps its serializer caches warm; the given mapper must not be reconfigured afterwards.
+     */
+    public static ObjectMapper getTypeReferencingMapper(ObjectMapper mapper) {
+        MapperKey key = new MapperKey(mapper);
+        ObjectMapper copy = typeReferencingMappers.get(key);
+        if (copy != null) {
+            return copy;
+        }
+        synchronized (LOCK) {
+            copy = typeReferencingMappers.get(key);
+            if (copy == null) {
+                copy = applyTypeReferencing(mapper.copy());
+                Map<MapperKey, ObjectMapper> more = new HashMap<>();
+                for (Map.Entry<MapperKey, ObjectMapper> entry : typeReferencingMappers.entrySet()) {
+                    // drops the copies of mappers that were collected
+                    if (entry.getKey().get() != null) {
+                        more.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                more.put(key, copy);
+                typeReferencingMappers = more;
+            }
+            return copy;
+        }
+    }
+
     public static void applyCustomDateTypes() {
         List<TypesSupport> providers = findProviders();
         for (TypesSupport el: providers) {
@@ -43,4 +81,28 @@ public class SPIHelper {
         }
         return copy;
     }
+
+    // a weak reference to a mapper, equal to the references to the same mapper
+    private static final class MapperKey extends WeakReference<ObjectMapper> {
+        private final int hash;
+
+        MapperKey(ObjectMapper mapper) {
+            super(mapper);
+            this.hash = System.identityHashCode(mapper);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) {
+                return true;
+            }
+            ObjectMapper mapper = get();
+            return other instanceof MapperKey && mapper != null && mapper == ((MapperKey) other).get();
+        }
+    }
 }
@@ -26,4 +26,9 @@ public class Assign extends Tag {
 
         return "";
     }
+
+    @Override
+    public boolean mayInterrupt(LNode... nodes) {
+        return false;
+    }
 }
@@ -45,4 +45,9 @@ public class Decrement extends Tag {
 
         return value;
     }
+
+    @Override
+    public boolean mayInterrupt(LNode... nodes) {
+        return false;
+    }
 }
@@ -2,6 +2,10 @@ package liqp.tags;
 
 import liqp.Template;
 import liqp.TemplateContext;
+import liqp.TemplateLoader;
+import liqp.exceptions.ExceededMaxIterationsException;
+import liqp.exceptions.ExceededMaxRenderTimeException;
+import liqp.loaders.FileSystemTemplateLoader;
 import liqp.nodes.LNode;
 import liqp.parser.Flavor;
 
@@ -18,24 +22,27 @@ public class Include extends Tag {
     @Override
     public Object render(TemplateContext context, LNode... nodes) {
 
+        context.checkRenderTimeNow();
+
         try {
             String includeResource = super.asString(nodes[0].render(context), context);
             String extension = DEFAULT_EXTENSION;
             if (includeResource.indexOf('.') > 0) {
                 extension = "";
             }
-            File includeResourceFile;
+            TemplateLoader loader;
             String includesDirectory = (String) context.get(INCLUDES_DIRECTORY_KEY);
 
             if (includesDirectory != null) {
-                includeResourceFile = new File(includesDirectory, includeResource + extension);
+                // cheap to create, the include cache keys the templates by their file, not by the loader
+                loader = new FileSystemTemplateLoader(new File(includesDirectory));
             } else {
-                includeResourceFile = new File(context.parseSettings.flavor.snippetsFolderName,
-                        includeResource + extension);
+                loader = context.getParser().getTemplateLoader();
             }
 
             Template template;
-            template = context.getParser().parse(includeResourceFile);
+            template = context.getParser().getIncludeCache().get(context.getParser(), loader,
+                    includeResource + extension);
 
             Map<String, Object> variables = new HashMap<String, Object>();
 
@@ -57,6 +64,9 @@ public class Include extends Tag {
             }
 
             return template.renderToObjectUnguarded(variables, context, true);
+        } catch (ExceededMaxIterationsException | ExceededMaxRenderTimeException e) {
+            // the include shares the iteration budget and deadline of the including template
+            throw e;
         } catch (Exception e) {
             if (context.renderSettings.showExceptionsFromInclude) {
                 throw new RuntimeException("problem with evaluating include", e);
@@ -65,4 +75,9 @@ public class Include extends Tag {
             }
         }
     }
+
+    @Override
+    public boolean mayInterrupt(LNode... nodes) {
+        return false;
+    }
 }
@@ -56,4 +56,9 @@ public class Increment extends Tag {
 
         return value;
     }
+
+    @Override
+    public boolean mayInterrupt(LNode... nodes) {
+        return false;
+    }
 }
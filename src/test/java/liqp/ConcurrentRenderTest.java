@@ -0,0 +1,79 @@
+package liqp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class ConcurrentRenderTest {
+
+    private static final int THREADS = 8;
+    private static final int RENDERS_PER_THREAD = 250;
+
+    private static final String SOURCE = "{% for i in (0..4) %}" +
+            "{% cycle 'a', 'b' %}{{ items[i] }}{{ forloop.index }}" +
+            "{% endfor %}|{{ items[n] }}|{% capture c %}{{ n | plus: 1 }}{% endcapture %}{{ c }}";
+
+    @Test
+    public void testSharedTemplateRenderedByManyThreads() throws Exception {
+        // every render needs 5 iterations, so a budget shared between renders would run out quickly
+        TemplateParser parser = new TemplateParser.Builder().withProtectionSettings(
+                new ProtectionSettings.Builder().withMaxIterations(5).build()).build();
+        final Template template = parser.parse(SOURCE);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    start.await();
+                    for (int r = 0; r < RENDERS_PER_THREAD; r++) {
+                        int n = (thread + r) % 5;
+                        assertEquals(expected(thread, n), template.render(variables(thread, n)));
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Map<String, Object> variables(int thread, int n) {
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            items.add("t" + thread + "i" + i);
+        }
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("items", items);
+        variables.put("n", n);
+        return variables;
+    }
+
+    private static String expected(int thread, int n) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            builder.append(i % 2 == 0 ? "a" : "b").append("t").append(thread).append("i").append(i)
+                    .append(i + 1);
+        }
+        return builder.append("|t").append(thread).append("i").append(n).append("|").append(n + 1)
+                .toString();
+    }
+}
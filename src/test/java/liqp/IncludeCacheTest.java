@@ -0,0 +1,113 @@
+package liqp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import liqp.tags.Include;
+
+public class IncludeCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Map<String, Object> includesDirectory() {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put(Include.INCLUDES_DIRECTORY_KEY, folder.getRoot());
+        return variables;
+    }
+
+    private File write(String name, String content, long lastModified) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(lastModified);
+        return file;
+    }
+
+    @Test
+    public void testIncludeIsParsedOncePerParser() throws IOException {
+        write("item.liquid", "[{{ i }}]", 1000000L);
+        TemplateParser parser = new TemplateParser.Builder().build();
+        Template template = parser.parse("{% for i in (1..5) %}{% include 'item' %}{% endfor %}");
+
+        assertEquals("[1][2][3][4][5]", template.render(includesDirectory()));
+        assertEquals("[1][2][3][4][5]", template.render(includesDirectory()));
+
+        IncludeCache cache = parser.getIncludeCache();
+        assertEquals(1, cache.getMissCount());
+        assertEquals(9, cache.getHitCount());
+        assertEquals(1, cache.size());
+        assertEquals(9, cache.getWeight());
+    }
+
+    @Test
+    public void testChangedIncludeIsParsedAgain() throws IOException {
+        write("item.liquid", "a", 1000000L);
+        TemplateParser parser = new TemplateParser.Builder().build();
+        Template template = parser.parse("{% include 'item' %}");
+        assertEquals("a", template.render(includesDirectory()));
+
+        write("item.liquid", "b", 2000000L);
+        assertEquals("b", template.render(includesDirectory()));
+        assertEquals(2, parser.getIncludeCache().getMissCount());
+    }
+
+    @Test
+    public void testInvalidate() throws IOException {
+        File file = write("item.liquid", "a", 1000000L);
+        TemplateParser parser = new TemplateParser.Builder().build();
+        Template template = parser.parse("{% include 'item' %}");
+        assertEquals("a", template.render(includesDirectory()));
+
+        // same length and modification time, so only noticed after an explicit invalidate
+        write("item.liquid", "b", 1000000L);
+        assertEquals("a", template.render(includesDirectory()));
+
+        parser.getIncludeCache().invalidate(file);
+        assertEquals(0, parser.getIncludeCache().size());
+        assertEquals("b", template.render(includesDirectory()));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws IOException {
+        write("a.liquid", "a", 1000000L);
+        write("b.liquid", "b", 1000000L);
+        write("c.liquid", "c", 1000000L);
+        TemplateParser parser = new TemplateParser.Builder().withIncludeCache(new IncludeCache(2, 100))
+                .build();
+
+        assertEquals("abac", parser.parse("{% include 'a' %}{% include 'b' %}{% include 'a' %}{% include 'c' %}")
+                .render(includesDirectory()));
+        IncludeCache cache = parser.getIncludeCache();
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.size());
+
+        // "b" was evicted, "a" was kept
+        parser.parse("{% include 'a' %}{% include 'b' %}").render(includesDirectory());
+        assertEquals(4, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void testWeightBound() throws IOException {
+        write("a.liquid", "aaaa", 1000000L);
+        write("b.liquid", "bbbb", 1000000L);
+        TemplateParser parser = new TemplateParser.Builder().withIncludeCache(new IncludeCache(10, 6))
+                .build();
+
+        parser.parse("{% include 'a' %}{% include 'b' %}").render(includesDirectory());
+
+        IncludeCache cache = parser.getIncludeCache();
+        assertEquals(1, cache.size());
+        assertEquals(4, cache.getWeight());
+    }
+}
@@ -0,0 +1,98 @@
+package liqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.Test;
+
+import liqp.blocks.Block;
+import liqp.exceptions.LiquidException;
+import liqp.nodes.LNode;
+
+public class ParserPoolTest {
+
+    private static final Block BOX = new Block("box") {
+        @Override
+        public Object render(TemplateContext context, LNode... nodes) {
+            return "[" + super.asString(nodes[0].render(context), context) + "]";
+        }
+    };
+
+    private static TemplateParser newParser() {
+        return new TemplateParser.Builder().withParseSettings(new ParseSettings.Builder().with(BOX).build())
+                .build();
+    }
+
+    @Test
+    public void testLexersAndParsersAreReused() {
+        TemplateParser parser = newParser();
+        for (int i = 0; i < 5; i++) {
+            assertEquals("a[" + i + "]", parser.parse("a{% box %}{{ i }}{% endbox %}").render("{\"i\": " + i + "}"));
+        }
+
+        ParserPool pool = parser.getParserPool();
+        assertEquals(5, pool.getParseCount());
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(0, pool.getLlFallbackCount());
+    }
+
+    @Test
+    public void testFailedParsesDoNotLeaveState() {
+        TemplateParser parser = newParser();
+        try {
+            parser.parse("{% box %}unclosed");
+            fail();
+        } catch (LiquidException e) {
+            // expected
+        }
+
+        assertEquals(errorOf(newParser(), "x{% endbox %}"), errorOf(parser, "x{% endbox %}"));
+        assertEquals("[b]", parser.parse("{% box %}b{% endbox %}").render());
+        assertEquals(1, parser.getParserPool().getCreatedCount());
+    }
+
+    @Test
+    public void testLlFallbacksAreCounted() {
+        TemplateParser parser = newParser();
+        errorOf(parser, "{% if %}");
+
+        assertEquals(1, parser.getParserPool().getParseCount());
+        assertEquals(1, parser.getParserPool().getLlFallbackCount());
+    }
+
+    @Test
+    public void testWarmUpSkipsSourcesThatDoNotParse() {
+        TemplateParser parser = newParser();
+
+        int parsed = parser.warmUp(Arrays.asList("{{ a | upcase }}", "{% for i in x %}{{ i }}{% endfor %}",
+                "{% if %}", "{% box %}{% endbox %}"));
+
+        assertEquals(3, parsed);
+        assertEquals(4, parser.getParserPool().getParseCount());
+    }
+
+    @Test
+    public void testPoolsCanBeDisabled() {
+        ParseSettings settings = new ParseSettings.Builder().build();
+        ParserPool pool = new ParserPool(settings, settings.flavor.getInsertions(), 0);
+        pool.parse(CharStreams.fromString("{{ a }}"));
+        pool.parse(CharStreams.fromString("{{ b }}"));
+
+        assertEquals(2, pool.getCreatedCount());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    private static String errorOf(TemplateParser parser, String source) {
+        try {
+            parser.parse(source);
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+        fail(source + " parsed");
+        return null;
+    }
+}
@@ -1,7 +1,21 @@
 package liqp;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Test;
 
+import liqp.exceptions.ExceededMaxIterationsException;
+import liqp.exceptions.ExceededMaxRenderTimeException;
+
 public class ProtectionSettingsTest {
 
     @Test
@@ -23,6 +37,89 @@ public class ProtectionSettingsTest {
         parser.parse("{% for i in (1..100000) %}{{ i }}{% endfor %}").render();
     }
 
+    @Test
+    public void testTimeLimitedRendersShareTheParsersExecutor() {
+        TemplateParser parser = new TemplateParser.Builder().withProtectionSettings(
+                new ProtectionSettings.Builder().withMaxRenderTimeMillis(1000L).build()).build();
+        Template template = parser.parse("{% for i in (1..3) %}{{ i }}{% endfor %}");
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("123", template.render());
+        }
+
+        RenderExecutor executor = parser.getRenderExecutor();
+        assertEquals(10, executor.getSubmittedCount());
+        assertEquals(0, executor.getTimedOutCount());
+        assertEquals(0, executor.getRejectedCount());
+    }
+
+    @Test
+    public void testTimedOutRenderIsCancelled() throws InterruptedException {
+        RenderExecutor executor = new RenderExecutor(1, 1);
+        TemplateParser parser = new TemplateParser.Builder().withProtectionSettings(
+                new ProtectionSettings.Builder().withMaxRenderTimeMillis(50).build())
+                .withRenderExecutor(executor).build();
+
+        Template template = parser.parse("{% for i in (1..2000000000) %}{% endfor %}");
+        assertThrows(ExceededMaxRenderTimeException.class, template::render);
+        assertEquals(1, executor.getTimedOutCount());
+
+        // the worker stops as well, instead of running the loop to its end
+        for (int i = 0; i < 100 && executor.getActiveCount() > 0; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, executor.getActiveCount());
+    }
+
+    @Test
+    public void testCooperativeRenderTimeLimitOnCallingThread() {
+        RenderExecutor executor = new RenderExecutor(1, 1);
+        TemplateParser parser = new TemplateParser.Builder().withProtectionSettings(
+                new ProtectionSettings.Builder().withMaxRenderTimeMillis(50)
+                        .withCooperativeRenderTimeLimit(true).build())
+                .withRenderExecutor(executor).build();
+
+        assertEquals("123", parser.parse("{% for i in (1..3) %}{{ i }}{% endfor %}").render());
+
+        Template template = parser.parse("{% for i in (1..2000000000) %}{% endfor %}");
+        long start = System.nanoTime();
+        assertThrows(ExceededMaxRenderTimeException.class, template::render);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+        assertEquals(0, executor.getSubmittedCount());
+    }
+
+    @Test
+    public void testSaturatedRenderExecutorRejects() throws InterruptedException {
+        RenderExecutor executor = new RenderExecutor(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        try {
+            for (int i = 0; i < 2; i++) {
+                Thread thread = new Thread(() -> executor.render(() -> {
+                    release.await();
+                    return null;
+                }, 10000));
+                thread.start();
+                threads.add(thread);
+            }
+            for (int i = 0; i < 100 && executor.getQueuedCount() == 0; i++) {
+                Thread.sleep(50);
+            }
+
+            assertThrows(RejectedExecutionException.class, () -> executor.render(() -> null, 10000));
+            assertEquals(1, executor.getRejectedCount());
+            assertEquals(1, executor.getActiveCount());
+            assertEquals(1, executor.getQueuedCount());
+        } finally {
+            release.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testWithinMaxIterationsRange() {
         TemplateParser.DEFAULT.parse("{% for i in (1..100) %}{{ i }}{% endfor %}")
@@ -74,6 +171,41 @@ public class ProtectionSettingsTest {
                 .render("{\"array\": [[1,2,3,4,5], [11,12,13,14,15], [21,22,23,24,25]]}");
     }
 
+    @Test
+    public void testMaxIterationsArePerRender() {
+        TemplateParser parser = new TemplateParser.Builder().withProtectionSettings(
+                new ProtectionSettings.Builder().withMaxIterations(10).build()).build();
+        Template template = parser.parse("{% for i in (1..10) %}{{ i }}{% endfor %}");
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("12345678910", template.render());
+        }
+    }
+
+    @Test
+    public void testIncludeSharesIterationBudget() {
+        String source = "{% for item in (1..2) %}{% include 'include_iteration' %}{% endfor %}";
+
+        // 2 outer iterations, each including a template with 2 iterations
+        TemplateParser within = new TemplateParser.Builder().withProtectionSettings(
+                new ProtectionSettings.Builder().withMaxIterations(6).build()).build();
+        assertEquals("1212", within.parse(source).render());
+
+        TemplateParser exceeding = new TemplateParser.Builder().withProtectionSettings(
+                new ProtectionSettings.Builder().withMaxIterations(5).build()).build();
+        assertThrows(ExceededMaxIterationsException.class, () -> exceeding.parse(source).render());
+    }
+
+    @Test
+    public void testIterationsCountedByContext() {
+        TemplateParser parser = TemplateParser.DEFAULT;
+        Template.ContextHolder holder = new Template.ContextHolder();
+        parser.parse("{% for i in (1..3) %}{% for j in (1..2) %}{% endfor %}{% endfor %}")
+                .withContextHolder(holder).render(new HashMap<>());
+
+        assertEquals(9, holder.getContext().getIterations());
+    }
+
     @Test
     public void testWithinMaxIterationsTablerow() {
         TemplateParser.DEFAULT.parse("{% tablerow n in collections.frontpage cols:3%} {{n}} {% endtablerow %}")
@@ -0,0 +1,151 @@
+package liqp;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import liqp.RenderTransformer.ObjectAppender;
+
+public class StreamingRenderTest {
+
+    private static String stream(Template template, Map<String, Object> variables) {
+        StringBuilder out = new StringBuilder();
+        template.render(new HashMap<>(variables), out);
+        return out.toString();
+    }
+
+    private static void assertSameOutput(String source, Map<String, Object> variables) {
+        Template template = TemplateParser.DEFAULT.parse(source);
+        assertEquals(source, template.render(new HashMap<>(variables)), stream(template, variables));
+    }
+
+    @Test
+    public void testStreamingMatchesRender() {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("items", Arrays.asList("a", "b", "c", "d"));
+        variables.put("empty", Arrays.asList());
+        variables.put("n", 3);
+
+        String[] sources = {
+                "plain text",
+                "{{ items | join: ',' }}{{ items }}{{ n | plus: 1 }}",
+                "{% for i in items %}[{{ i }}{{ forloop.index }}]{% endfor %}",
+                "{% for i in (1..n) reversed %}{% for j in items limit:2 %}{{ i }}{{ j }}{% endfor %}{% endfor %}",
+                "{% for i in empty %}x{% else %}none{% endfor %}",
+                "{% for i in items %}a{% if i == 'b' %}b{% break %}c{% endif %}d{% endfor %}",
+                "{% for i in items %}a{% if i == 'b' %}b{% continue %}c{% endif %}d{% endfor %}",
+                "{% for i in (1..3) %}{% for j in items %}{% if j == 'c' %}{% break %}{% endif %}{{ j }}{% endfor %}|{% endfor %}",
+                "{% if n > 2 %}big{% elsif n > 1 %}medium{% else %}small{% endif %}",
+                "{% unless n > 2 %}small{% else %}big{% endunless %}",
+                "{% case n %}{% when 1 %}one{% when 2, 3 %}two or three{% else %}other{% endcase %}",
+                "{% tablerow i in items cols:3 %}{{ i }}{% endtablerow %}",
+                "{% capture c %}{% for i in items %}{{ i }}{% endfor %}{% endcapture %}{{ c | upcase }}",
+                "{% for i in items %}{% cycle 'x', 'y' %}{% ifchanged %}{{ n }}{% endifchanged %}{% endfor %}",
+                "{% assign d = 'now' | date: '%Y' %}{% raw %}{{ raw }}{% endraw %}{% comment %}c{% endcomment %}",
+                "{% include 'color' with 'red' %}"
+        };
+
+        for (String source : sources) {
+            assertSameOutput(source, variables);
+        }
+    }
+
+    @Test
+    public void testStreamingRenderIsWrittenIncrementally() {
+        Template template = TemplateParser.DEFAULT.parse("{% for i in (1..3) %}{{ i }}{% endfor %}");
+        final List<String> appended = new ArrayList<>();
+        Appendable out = new Appendable() {
+            @Override
+            public Appendable append(CharSequence csq) {
+                appended.add(csq.toString());
+                return this;
+            }
+
+            @Override
+            public Appendable append(CharSequence csq, int start, int end) {
+                return append(csq.subSequence(start, end));
+            }
+
+            @Override
+            public Appendable append(char c) {
+                return append(String.valueOf(c));
+            }
+        };
+
+        template.render(new HashMap<>(), out);
+
+        // no intermediate string of the whole loop is built
+        assertThat(appended, is(Arrays.asList("1", "2", "3")));
+    }
+
+    @Test
+    public void testStreamingRenderHonorsMaxSizeRenderedString() {
+        TemplateParser parser = new TemplateParser.Builder().withProtectionSettings(
+                new ProtectionSettings.Builder().withMaxSizeRenderedString(5).build()).build();
+        Template template = parser.parse("{% for i in (1..10) %}{{ i }}{% endfor %}");
+        StringBuilder out = new StringBuilder();
+
+        try {
+            template.render(new HashMap<>(), out);
+            fail("expected the rendered string to exceed the maximum size");
+        } catch (RuntimeException e) {
+            assertThat(e.getMessage(), is("rendered string exceeds 5"));
+        }
+        assertThat(out.toString(), is("12345"));
+    }
+
+    @Test
+    public void testStreamingRenderToOutputStream() {
+        Template template = TemplateParser.DEFAULT.parse("{{ greeting }}, wörld");
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("greeting", "héllo");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        template.render(variables, out, StandardCharsets.UTF_8);
+
+        assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8), is("héllo, wörld"));
+    }
+
+    @Test
+    public void testStreamingRenderHonorsCustomRenderTransformer() {
+        RenderTransformer upperCase = new RenderTransformer() {
+            @Override
+            public ObjectAppender.Controller newObjectAppender(TemplateContext context, int estimate) {
+                StringBuilder sb = new StringBuilder();
+                return new ObjectAppender.Controller() {
+                    @Override
+                    public Object getResult() {
+                        return transformObject(context, sb);
+                    }
+
+                    @Override
+                    public void append(Object obj) {
+                        sb.append(obj);
+                    }
+                };
+            }
+
+            @Override
+            public Object transformObject(TemplateContext context, Object obj) {
+                return String.valueOf(obj).toUpperCase();
+            }
+        };
+        TemplateParser parser = new TemplateParser.Builder().withRenderSettings(
+                new RenderSettings.Builder().withRenderTransformer(upperCase).build()).build();
+        Template template = parser.parse("{% for i in (1..3) %}a{{ i }}{% endfor %} b");
+
+        assertThat(template.render(), is("A1A2A3 B"));
+        assertThat(stream(template, new HashMap<>()), is("A1A2A3 B"));
+    }
+}
@@ -0,0 +1,113 @@
+package liqp;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import liqp.loaders.MapTemplateLoader;
+
+public class TemplateContextTest {
+
+    @Test
+    public void slotsAndNamesSeeTheSameVariables() {
+        VariableLayout layout = new VariableLayout();
+        int slot = layout.register("slotted_variable");
+        TemplateContext root = new TemplateContext(TemplateParser.DEFAULT,
+                Collections.singletonMap("slotted_variable", "root"));
+        root.useLayout(layout);
+        TemplateContext child = root.newChildContext(new HashMap<>());
+
+        assertThat(child.get(layout, slot), is("root"));
+        assertThat(child.get("slotted_variable"), is("root"));
+
+        child.put("slotted_variable", "child");
+        assertThat(child.get(layout, slot), is("child"));
+        assertThat(root.get(layout, slot), is("root"));
+
+        // a null value falls back to the parent, as in the map
+        child.put(slot, null);
+        assertTrue(child.containsKey("slotted_variable"));
+        assertThat(child.get("slotted_variable"), is("root"));
+        assertThat(child.getVariables().containsKey("slotted_variable"), is(true));
+
+        child.remove("slotted_variable");
+        assertThat(child.remove("slotted_variable"), is("root"));
+        assertFalse(child.containsKey("slotted_variable"));
+        assertThat(child.get(layout, slot), nullValue());
+    }
+
+    @Test
+    public void contextsOfOtherLayoutsAreReadByName() {
+        VariableLayout outer = new VariableLayout();
+        outer.register("a");
+        VariableLayout inner = new VariableLayout();
+        int b = inner.register("b");
+        int a = inner.register("a");
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("a", 1);
+        variables.put("b", 2);
+        TemplateContext root = new TemplateContext(TemplateParser.DEFAULT, variables);
+        root.useLayout(outer);
+        TemplateContext child = root.newChildContext(new HashMap<>());
+        child.useLayout(inner);
+
+        assertThat(child.get(inner, a), is(1));
+        assertThat(child.get(inner, b), is(2));
+
+        child.put("a", 3);
+        assertThat(child.get(inner, a), is(3));
+        assertThat(root.get("a"), is(1));
+        assertThat(root.getVariables(), is(variables));
+    }
+
+    @Test
+    public void variablesOfTheCallerAreNotMovedOutOfItsMap() {
+        TemplateContext root = new TemplateContext(TemplateParser.DEFAULT, new HashMap<>());
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("name", "bob");
+
+        Template template = TemplateParser.DEFAULT.parse("{{ name }}");
+        assertThat(template.renderUnguarded(variables, root, true), is("bob"));
+        assertThat(variables, is(Collections.<String, Object>singletonMap("name", "bob")));
+
+        VariableLayout layout = new VariableLayout();
+        int slot = layout.register("name");
+        root.useLayout(layout);
+        TemplateContext child = root.newChildContext(variables);
+        assertThat(child.get(layout, slot), is("bob"));
+        assertThat(variables.get("name"), is("bob"));
+    }
+
+    @Test
+    public void includedTemplatesHaveTheirOwnLayout() {
+        MapTemplateLoader loader = new MapTemplateLoader(Collections.singletonMap("item.liquid",
+                "{% assign shown = item | append: x %}{{ shown }}{{ y }}"));
+        TemplateParser parser = new TemplateParser.Builder().withTemplateLoader(loader).build();
+
+        String rendered = parser.parse("{% assign y = '.' %}{% for item in (1..2) %}{% assign x = '!' %}"
+                + "{% include 'item' %}{% endfor %}{{ shown }}").render(Collections.singletonMap("z", 0));
+
+        assertThat(rendered, is("1!.2!.2!"));
+    }
+
+    @Test
+    public void dynamicLookupsUseTheNames() {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("value", "found");
+
+        String rendered = TemplateParser.DEFAULT
+                .parse("{% assign name = 'value' %}{{ [name] }}-{% for x in (1..2) %}{{ [name] }}{% endfor %}")
+                .render(variables);
+
+        assertThat(rendered, is("found-foundfound"));
+    }
+}
@@ -344,4 +344,14 @@ public class TemplateTest {
                 "{% assign comparingValue = 98 | divided_by: 1.0 %}{{ 99 > comparingValue }}");
     }
 
+    @Test
+    public void testNodeTreeIsBuiltOnceAndReused() {
+        Template template = TemplateParser.DEFAULT.parse("{% for i in (1..3) %}{{ i | plus: x }}{% endfor %}");
+        LNode root = template.getRootNode();
+
+        assertEquals("234", template.render("{\"x\": 1}"));
+        assertEquals("456", template.render("{\"x\": 3}"));
+        assertThat(template.getRootNode(), is(root));
+    }
+
 }
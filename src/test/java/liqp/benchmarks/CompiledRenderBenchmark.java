@@ -0,0 +1,94 @@
+package liqp.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import liqp.ParseSettings;
+import liqp.Template;
+import liqp.TemplateParser;
+
+/**
+ * Compares rendering a parsed template in interpreted mode against rendering it after the tree
+ * optimizer and the bytecode compiler have run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledRenderBenchmark {
+
+    private Template interpreted;
+    private Template optimized;
+    private Template compiled;
+    private Map<String, Object> variables;
+
+    @Setup
+    public void setUp() {
+        interpreted = TemplateParser.DEFAULT.parse(ParseRenderBenchmark.SOURCE);
+        optimized = parser(new ParseSettings.Builder().withOptimize(true))
+                .parse(ParseRenderBenchmark.SOURCE);
+        compiled = parser(new ParseSettings.Builder().withOptimize(true).withBytecodeCompilation(true))
+                .parse(ParseRenderBenchmark.SOURCE);
+
+        List<Map<String, Object>> products = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Map<String, Object> product = new HashMap<>();
+            product.put("title", "Product " + i);
+            product.put("price", i * 2);
+            products.add(product);
+        }
+        variables = new HashMap<>();
+        variables.put("title", "Catalog");
+        variables.put("products", products);
+    }
+
+    private static TemplateParser parser(ParseSettings.Builder settings) {
+        return new TemplateParser.Builder().withParseSettings(settings.build()).build();
+    }
+
+    @Benchmark
+    public String renderInterpreted() {
+        return interpreted.render(variables);
+    }
+
+    @Benchmark
+    public String renderOptimized() {
+        return optimized.render(variables);
+    }
+
+    @Benchmark
+    public String renderCompiled() {
+        return compiled.render(variables);
+    }
+
+    @Benchmark
+    public String renderCompiledStreamed() {
+        StringBuilder out = new StringBuilder();
+        compiled.render(variables, out);
+        return out.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CompiledRenderBenchmark.class.getSimpleName()).build())
+                .run();
+    }
+}
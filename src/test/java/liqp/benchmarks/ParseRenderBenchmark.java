@@ -0,0 +1,84 @@
+package liqp.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import liqp.Template;
+import liqp.TemplateParser;
+
+/**
+ * Compares parsing and rendering a template on every call against rendering an already parsed
+ * template.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseRenderBenchmark {
+
+    static final String SOURCE = "<h1>{{ title | upcase }}</h1>\n" +
+            "<ul>\n" +
+            "{% for product in products %}" +
+            "  <li class=\"{% cycle 'odd', 'even' %}\">\n" +
+            "    {% if product.price > 50 %}<b>{{ product.title }}</b>{% else %}{{ product.title }}{% endif %}\n" +
+            "    {{ product.price | times: 1.21 | round: 2 }} ({{ forloop.index }}/{{ forloop.length }})\n" +
+            "  </li>\n" +
+            "{% endfor %}" +
+            "</ul>\n" +
+            "{% assign total = products | size %}<p>{{ total }} products</p>\n";
+
+    private TemplateParser parser;
+    private Template template;
+    private Map<String, Object> variables;
+
+    @Setup
+    public void setUp() {
+        parser = TemplateParser.DEFAULT;
+        template = parser.parse(SOURCE);
+
+        List<Map<String, Object>> products = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Map<String, Object> product = new HashMap<>();
+            product.put("title", "Product " + i);
+            product.put("price", i * 2);
+            products.add(product);
+        }
+        variables = new HashMap<>();
+        variables.put("title", "Catalog");
+        variables.put("products", products);
+    }
+
+    @Benchmark
+    public String parseAndRender() {
+        return parser.parse(SOURCE).render(variables);
+    }
+
+    @Benchmark
+    public String renderOnly() {
+        return template.render(variables);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ParseRenderBenchmark.class.getSimpleName()).build())
+                .run();
+    }
+}
@@ -8,8 +8,16 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import org.antlr.v4.runtime.RecognitionException;
 import org.junit.Assert;
@@ -20,6 +28,8 @@ import liqp.Template;
 import liqp.TemplateContext;
 import liqp.TemplateParser;
 import liqp.parser.Inspectable;
+import liqp.parser.LiquidSequence;
+import liqp.parser.PageableCollection;
 
 public class ForTest {
 
@@ -934,4 +944,179 @@ public class ForTest {
         assertPatternResultEquals(TemplateParser.DEFAULT, "123",
             "{% assign offsets = '1,2,3' | split: ',' %}{% for offset in offsets %}{{ offset }}{% endfor %}");
     }
+
+    // a list that may only be iterated in place
+    static class NoCopyList<E> extends ArrayList<E> {
+        NoCopyList(Collection<E> items) {
+            super(items);
+        }
+
+        @Override
+        public Object[] toArray() {
+            throw new AssertionError("copied");
+        }
+    }
+
+    @Test
+    public void listsAreIteratedInPlace() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("list", new NoCopyList<>(Arrays.asList(1, 2, 3, 4, 5, 6)));
+        data.put("linked", new LinkedList<>(Arrays.asList(1, 2, 3, 4, 5, 6)));
+
+        for (String name : new String[] { "list", "linked" }) {
+            assertTemplateResult("123456", "{% for i in " + name + " %}{{ i }}{% endfor %}", data);
+            assertTemplateResult("345", "{% for i in " + name + " offset:2 limit:3 %}{{ i }}{% endfor %}", data);
+            assertTemplateResult("543", "{% for i in " + name + " reversed offset:2 limit:3 %}{{ i }}{% endfor %}", data);
+            assertTemplateResult("65", "{% for i in " + name + " reversed offset:4 %}{{ i }}{% endfor %}", data);
+            assertTemplateResult("", "{% for i in " + name + " offset:10 %}{{ i }}{% endfor %}", data);
+            assertTemplateResult("1-2-3-4-5-6", "{{ " + name + " | join: '-' }}", data);
+        }
+    }
+
+    // counts the items that are taken from it
+    static class CountingSequence implements LiquidSequence<Integer> {
+        private final int size;
+        private final boolean sized;
+        int taken;
+
+        CountingSequence(int size, boolean sized) {
+            this.size = size;
+            this.sized = sized;
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return new Iterator<Integer>() {
+                private int next = 1;
+
+                @Override
+                public boolean hasNext() {
+                    return next <= size;
+                }
+
+                @Override
+                public Integer next() {
+                    taken++;
+                    return next++;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return sized ? size : -1;
+        }
+    }
+
+    @Test
+    public void sequencesAreIteratedLazily() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("endless", Stream.iterate(1, i -> i + 1));
+        assertTemplateResult("1:false 2:false 3:true ",
+                "{% for i in endless limit:3 %}{{ i }}:{{ forloop.last }} {% endfor %}", data);
+
+        CountingSequence sequence = new CountingSequence(1000, false);
+        data.put("sequence", sequence);
+        assertTemplateResult("1", "{% for i in sequence %}{{ forloop.index }}{% break %}{% endfor %}", data);
+        assertThat(sequence.taken, is(1));
+
+        sequence = new CountingSequence(1000, true);
+        data.put("sequence", sequence);
+        assertTemplateResult("1000", "{% for i in sequence %}{{ forloop.length }}{% break %}{% endfor %}", data);
+        assertThat(sequence.taken, is(1));
+    }
+
+    @Test
+    public void lengthOfSequencesIsCountedWhenRead() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("sequence", new CountingSequence(5, false));
+        data.put("iterator", Arrays.asList(1, 2, 3).iterator());
+        data.put("empty", Collections.emptyIterator());
+
+        assertTemplateResult("3/5 2/5 1/5 ", "{% for i in sequence offset:1 limit:3 %}{{ forloop.rindex }}/{{ forloop.length | plus: 2 }} {% endfor %}", data);
+        assertTemplateResult("5:true 4:false 3:false 2:false 1:false ",
+                "{% for i in sequence reversed %}{{ i }}:{{ forloop.first }} {% endfor %}", data);
+        assertTemplateResult("1-true 2-true 3-true ",
+                "{% for i in iterator %}{{ i }}-{% if forloop.length == 3 %}true{% endif %} {% endfor %}", data);
+        assertTemplateResult("none", "{% for i in empty %}{{ i }}{% else %}none{% endfor %}", data);
+        assertTemplateResult("12|345", "{% for i in sequence limit:2 %}{{ i }}{% endfor %}|{% for i in sequence offset:continue %}{{ i }}{% endfor %}", data);
+    }
+
+    // an Iterable that is neither a collection nor a sequence, like a JSON node or a domain object
+    static class PlainIterable implements Iterable<Integer> {
+        @Override
+        public Iterator<Integer> iterator() {
+            return Arrays.asList(1, 2, 3).iterator();
+        }
+
+        @Override
+        public String toString() {
+            return "plain";
+        }
+    }
+
+    @Test
+    public void plainIterablesAreNotSequences() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("plain", new PlainIterable());
+
+        assertTemplateResult("plain", "{% for i in plain %}{{ i }}{% endfor %}", data);
+        assertTemplateResult("plain 0", "{{ plain }} {{ plain | size }}", data);
+    }
+
+    @Test
+    public void arrayFiltersAcceptSequences() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("stream", Stream.of("b", "c", "a"));
+        data.put("sequence", new CountingSequence(3, true));
+
+        assertTemplateResult("a,b,c", "{{ stream | sort | join: ',' }}", data);
+        assertTemplateResult("3 1-2-3", "{{ sequence | size }} {{ sequence | join: '-' }}", data);
+    }
+
+    // records the windows that are fetched from it
+    static class RecordingPageable implements PageableCollection<Integer> {
+        private final int size;
+        final List<String> slices = new ArrayList<>();
+
+        RecordingPageable(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public List<Integer> slice(int offset, int limit) {
+            slices.add(offset + "+" + limit);
+            List<Integer> items = new ArrayList<>();
+            for (int i = offset; i < Math.min(size, offset + limit); i++) {
+                items.add(i + 1);
+            }
+            return items;
+        }
+    }
+
+    @Test
+    public void onlyTheWindowOfPageableCollectionsIsFetched() {
+        RecordingPageable products = new RecordingPageable(20000);
+        Map<String, Object> data = new HashMap<>();
+        data.put("products", products);
+
+        assertTemplateResult("41,42,43,|44,45,|", "{% for p in products limit:3 offset:40 %}{{ p }},{% endfor %}|"
+                + "{% for p in products limit:2 offset:continue %}{{ p }},{% endfor %}|", data);
+        assertThat(products.slices, is(Arrays.asList("40+3", "43+2")));
+
+        products.slices.clear();
+        assertTemplateResult("20000/2 19999/2 ",
+                "{% for p in products reversed offset:19998 %}{{ p }}/{{ forloop.length }} {% endfor %}", data);
+        assertThat(products.slices, is(Arrays.asList("19998+2")));
+
+        data.put("none", new RecordingPageable(0));
+        assertTemplateResult("empty", "{% for p in none %}{{ p }}{% else %}empty{% endfor %}", data);
+        assertTemplateResult("", "{% for p in products offset:30000 %}{{ p }}{% else %}empty{% endfor %}", data);
+        assertTemplateResult("20000 no", "{{ products | size }} {{ none | default: 'no' }}", data);
+    }
 }
@@ -4,6 +4,11 @@ import static liqp.TestUtils.assertPatternResultEquals;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
 import org.antlr.v4.runtime.RecognitionException;
 import org.junit.Test;
 
@@ -465,4 +470,29 @@ public class TablerowTest {
             "<td class=\"col1\">1</td><td class=\"col2\">2</td><td class=\"col3\">3</td></tr>\n",
             "{% assign offsets = '1 2 3' | split: ' ' %}{% tablerow offset in offsets %}{{ offset }}{% endtablerow %}");
     }
+
+    @Test
+    public void linkedListIsIteratedFromOffset() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("items", new LinkedList<>(Arrays.asList(1, 2, 3, 4, 5)));
+
+        assertThat(TemplateParser.DEFAULT.parse("{% tablerow i in items offset:1 limit:3 cols:2 %}{{ i }}{% endtablerow %}")
+                .render(data),
+                is("<tr class=\"row1\">\n" +
+                        "<td class=\"col1\">2</td><td class=\"col2\">3</td></tr>\n" +
+                        "<tr class=\"row2\"><td class=\"col1\">4</td></tr>\n"));
+    }
+
+    @Test
+    public void onlyTheWindowOfPageableCollectionsIsFetched() {
+        ForTest.RecordingPageable products = new ForTest.RecordingPageable(1000);
+        Map<String, Object> data = new HashMap<>();
+        data.put("products", products);
+
+        assertThat(TemplateParser.DEFAULT.parse("{% tablerow p in products offset:10 limit:2 %}{{ p }}{% endtablerow %}")
+                .render(data),
+                is("<tr class=\"row1\">\n" +
+                        "<td class=\"col1\">11</td><td class=\"col2\">12</td></tr>\n"));
+        assertThat(products.slices, is(Arrays.asList("10+2")));
+    }
 }
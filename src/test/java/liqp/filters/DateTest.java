@@ -3,13 +3,17 @@ package liqp.filters;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.text.SimpleDateFormat;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 
 import org.antlr.v4.runtime.RecognitionException;
@@ -23,6 +27,7 @@ import liqp.Template;
 import liqp.TemplateContext;
 import liqp.TemplateParser;
 import liqp.filters.date.CustomDateFormatSupport;
+import liqp.filters.date.Parser;
 import liqp.parser.Flavor;
 import ua.co.k.strftime.formatters.HybridFormat;
 
@@ -226,4 +231,63 @@ public class DateTest {
         assertEquals("10-13", Template.parse("{{ \"2022-10-13\" | date: \"%m-%e\" }}").render());
         assertEquals("10-13", Template.parse("{{ \"13-10-2022\" | date: \"%m-%e\" }}").render());
     }
+
+    @Test
+    public void testIsoFastPath() {
+        assertEquals("2022-10-13 12:06:04 +0000",
+                TemplateParser.DEFAULT.parse("{{ '2022-10-13T12:06:04Z' | date: '%Y-%m-%d %H:%M:%S %z' }}").render());
+        assertEquals("12:06:04.250 +0530",
+                TemplateParser.DEFAULT.parse("{{ '2022-10-13 12:06:04.25+05:30' | date: '%H:%M:%S.%L %z' }}").render());
+        // an invalid day is left to the date patterns, which resolve it to the last day of the month
+        assertEquals("2022-02-28", TemplateParser.DEFAULT.parse("{{ '2022-02-30' | date: '%Y-%m-%d' }}").render());
+    }
+
+    @Test
+    public void testAddAndRemoveDatePattern() {
+        Template template = TemplateParser.DEFAULT.parse("{{ '13.10.2022' | date: '%Y-%m-%d' }}");
+        assertEquals("13.10.2022", template.render());
+
+        Date.addDatePattern("dd.MM.yyyy");
+        try {
+            assertEquals("2022-10-13", template.render());
+        } finally {
+            Date.removeDatePattern("dd.MM.yyyy");
+        }
+        assertEquals("13.10.2022", template.render());
+    }
+
+    @Test
+    public void testAssignedDatePatterns() {
+        Template template = TemplateParser.DEFAULT.parse("{{ '13/10/2022' | date: '%Y-%m-%d' }}");
+        assertEquals("13/10/2022", template.render());
+
+        List<String> original = Parser.datePatterns;
+        Parser.datePatterns = new ArrayList<>(Collections.singletonList("dd/MM/yyyy"));
+        try {
+            assertEquals("2022-10-13", template.render());
+            Parser.datePatterns.set(0, "MM/dd/yyyy");
+            assertEquals("13/10/2022", template.render());
+        } finally {
+            Parser.datePatterns = original;
+        }
+        assertEquals("13/10/2022", template.render());
+    }
+
+    @Test
+    public void testNowIsTheSameThroughoutARender() {
+        String rendered = TemplateParser.DEFAULT.parse(
+                "{% for i in (1..200) %}{{ 'now' | date: '%H:%M:%S.%L' }}|{{ 'today' | date: '%H:%M:%S.%L' }}|{% endfor %}")
+                .render();
+
+        String[] times = rendered.split("\\|");
+        assertEquals(400, times.length);
+        for (String time : times) {
+            assertEquals(times[0], time);
+        }
+    }
+
+    @Test
+    public void testFormatterIsCached() {
+        assertSame(Date.getFormatter("%Y-%m-%d", Locale.ENGLISH), Date.getFormatter("%Y-%m-%d", Locale.ENGLISH));
+    }
 }
@@ -2,12 +2,15 @@ package liqp.filters;
 
 import static java.util.Collections.singletonMap;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.util.Map;
 
 import org.junit.Test;
 
 import liqp.Template;
+import liqp.TemplateParser;
+import liqp.nodes.LNode;
 import liqp.parser.Flavor;
 
 public class Where_ExpTest {
@@ -322,6 +325,32 @@ public class Where_ExpTest {
         assertEquals("good", res);
     }
 
+    @Test
+    public void testExpressionIsParsedOnce() {
+        TemplateParser parser = new TemplateParser.Builder()
+                .withParseSettings(Flavor.JEKYLL.defaultParseSettings()).build();
+        Template template = parser.parse("{{ var | where_exp: 'item', 'item.size == \"large\"' | size }}");
+
+        assertEquals("2", template.render(array_of_objects));
+        LNode condition = parser.parseExpression("item.size == \"large\"");
+        assertEquals("2", template.render(array_of_objects));
+        assertSame(condition, parser.parseExpression("item.size == \"large\""));
+    }
+
+    @Test
+    public void testExpressionRenderingTheStringTrueMatches() {
+        String data = "{ \"var\" : [ " +
+                "   {\"flag\" : \"true\", \"marker\" : \"string\"}, " +
+                "   {\"flag\" : true, \"marker\" : \"boolean\"}, " +
+                "   {\"flag\" : \"false\", \"marker\" : \"wrong\"}" +
+                "] }";
+
+        String res = parse("{{ var | where_exp: 'item', 'item.flag' | map: 'marker' | join: ',' }}")
+                .render(data);
+
+        assertEquals("string,boolean", res);
+    }
+
     public Template parse(String template) {
         return Flavor.JEKYLL.defaultParser().parse(template);
     }
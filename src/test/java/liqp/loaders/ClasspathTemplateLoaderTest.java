@@ -0,0 +1,32 @@
+package liqp.loaders;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import liqp.TemplateParser;
+
+public class ClasspathTemplateLoaderTest {
+
+    @Test
+    public void testIncludeFromClasspath() {
+        TemplateParser parser = new TemplateParser.Builder()
+                .withTemplateLoader(new ClasspathTemplateLoader("liqp/loaders")).build();
+
+        assertEquals("Hello, World!", parser.parse("{% include 'greeting' %}").render("name", "World"));
+    }
+
+    @Test
+    public void testId() {
+        assertEquals("classpath:liqp/loaders/greeting.liquid",
+                new ClasspathTemplateLoader("liqp/loaders/").getId("greeting.liquid"));
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testMissingResource() throws IOException {
+        new ClasspathTemplateLoader("liqp/loaders").load("missing.liquid");
+    }
+}
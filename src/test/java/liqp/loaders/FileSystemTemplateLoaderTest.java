@@ -0,0 +1,67 @@
+package liqp.loaders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import liqp.TemplateParser;
+
+public class FileSystemTemplateLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLoad() throws IOException {
+        Files.write(folder.newFile("a.liquid").toPath(), "héllo {{ x }}".getBytes(StandardCharsets.UTF_8));
+        folder.newFile("empty.liquid");
+        FileSystemTemplateLoader loader = new FileSystemTemplateLoader(folder.getRoot());
+
+        assertEquals("héllo {{ x }}", loader.load("a.liquid"));
+        assertEquals("", loader.load("empty.liquid"));
+        assertEquals(new File(folder.getRoot(), "a.liquid").getAbsolutePath(), loader.getId("a.liquid"));
+    }
+
+    @Test
+    public void testVersionFollowsModificationTime() throws IOException {
+        File file = folder.newFile("a.liquid");
+        FileSystemTemplateLoader loader = new FileSystemTemplateLoader(folder.getRoot());
+        file.setLastModified(1000000L);
+        long version = loader.getVersion("a.liquid");
+
+        file.setLastModified(2000000L);
+        assertNotEquals(version, loader.getVersion("a.liquid"));
+    }
+
+    @Test
+    public void testVersionOfOlderButLongerFileDiffers() throws IOException {
+        File file = folder.newFile("a.liquid");
+        FileSystemTemplateLoader loader = new FileSystemTemplateLoader(folder.getRoot());
+        Files.write(file.toPath(), new byte[1]);
+        file.setLastModified(2000000L);
+        long version = loader.getVersion("a.liquid");
+
+        // one second earlier, 31000 bytes longer: the same stamp as 31 * lastModified + length
+        Files.write(file.toPath(), new byte[31001]);
+        file.setLastModified(1999000L);
+        assertNotEquals(version, loader.getVersion("a.liquid"));
+    }
+
+    @Test
+    public void testParserWithDirectory() throws IOException {
+        Files.write(folder.newFile("item.liquid").toPath(), "<{{ i }}>".getBytes(StandardCharsets.UTF_8));
+        TemplateParser parser = new TemplateParser.Builder()
+                .withTemplateLoader(new FileSystemTemplateLoader(folder.getRoot())).build();
+
+        assertEquals("<1><2>", parser.parse("{% for i in (1..2) %}{% include 'item' %}{% endfor %}").render());
+        assertEquals("<>", parser.parseNamed("item.liquid").render());
+    }
+}
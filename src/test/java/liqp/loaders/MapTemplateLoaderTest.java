@@ -0,0 +1,50 @@
+package liqp.loaders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import liqp.TemplateParser;
+
+public class MapTemplateLoaderTest {
+
+    @Test
+    public void testIncludeFromMemory() {
+        MapTemplateLoader loader = new MapTemplateLoader(Collections.singletonMap("item.liquid", "[{{ i }}]"));
+        TemplateParser parser = new TemplateParser.Builder().withTemplateLoader(loader).build();
+
+        assertEquals("[1][2]", parser.parse("{% for i in (1..2) %}{% include 'item' %}{% endfor %}").render());
+        assertEquals(1, parser.getIncludeCache().getMissCount());
+    }
+
+    @Test
+    public void testReplacedTemplateGetsNewVersion() throws IOException {
+        MapTemplateLoader loader = new MapTemplateLoader();
+        loader.put("a", "1");
+        long version = loader.getVersion("a");
+        TemplateParser parser = new TemplateParser.Builder().withTemplateLoader(loader).build();
+        assertEquals("1", parser.parseNamed("a").render());
+
+        loader.put("a", "2");
+        assertNotEquals(version, loader.getVersion("a"));
+        assertEquals("2", parser.parseNamed("a").render());
+    }
+
+    @Test
+    public void testLoadersDoNotShareCacheEntries() {
+        MapTemplateLoader first = new MapTemplateLoader(Collections.singletonMap("a", "1"));
+        MapTemplateLoader second = new MapTemplateLoader(Collections.singletonMap("a", "2"));
+
+        assertNotEquals(first.getId("a"), second.getId("a"));
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testMissingTemplate() throws IOException {
+        new MapTemplateLoader().load("missing");
+    }
+}
@@ -16,6 +16,7 @@ import org.junit.Test;
 import liqp.Template;
 import liqp.TemplateContext;
 import liqp.TemplateParser;
+import liqp.parser.LiquidDrop;
 
 public class LookupNodeTest {
 
@@ -340,5 +341,37 @@ public class LookupNodeTest {
         assertEquals("Hello default", TemplateParser.DEFAULT.parse("Hello {{data[99] | default: 'default'}}").render(Collections
                 .singletonMap("data", "123")));
     }
-}
 
+    @Test
+    public void dropPropertiesAreReadDirectly() {
+        LiquidDrop drop = new LiquidDrop() {
+            @Override
+            public Object getProperty(String name) {
+                return name.equals("answer") ? 42 : UNDEFINED;
+            }
+
+            @Override
+            public Map<String, Object> toLiquid() {
+                throw new AssertionError("toLiquid() called");
+            }
+        };
+
+        assertEquals("42-", TemplateParser.DEFAULT.parse("{{ drop.answer }}-{{ drop.question }}")
+                .render(Collections.singletonMap("drop", drop)));
+    }
+
+    @Test
+    public void loopPropertiesAreReadDirectly() {
+        String template = "{% assign xs = 'a,b' | split: ',' %}{% for i in (1..3) %}{% for j in xs %}"
+                + "{{ forloop.index }} {{ forloop.index0 }} {{ forloop.rindex }} {{ forloop.rindex0 }} "
+                + "{{ forloop.first }} {{ forloop.last }} {{ forloop.length }} {{ forloop.name }} "
+                + "{{ forloop.parentloop.index }} {{ forloop.size }} {{ forloop.other }}|"
+                + "{% endfor %}{% endfor %}";
+
+        String rendered = TemplateParser.DEFAULT.parse(template).render();
+
+        assertThat(rendered, is("1 0 2 1 true false 2 j-xs 1 9 |2 1 1 0 false true 2 j-xs 1 9 |"
+                + "1 0 2 1 true false 2 j-xs 2 9 |2 1 1 0 false true 2 j-xs 2 9 |"
+                + "1 0 2 1 true false 2 j-xs 3 9 |2 1 1 0 false true 2 j-xs 3 9 |"));
+    }
+}
@@ -0,0 +1,148 @@
+package liqp.nodes;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import liqp.ParseSettings;
+import liqp.Template;
+import liqp.TemplateContext;
+import liqp.TemplateParser;
+import liqp.filters.Filter;
+
+public class NodeSerializerTest {
+
+    private static final TemplateParser OPTIMIZING = new TemplateParser.Builder()
+            .withParseSettings(new ParseSettings.Builder().withOptimize(true).build()).build();
+
+    private static final TemplateParser COMPILING = new TemplateParser.Builder()
+            .withParseSettings(new ParseSettings.Builder().withBytecodeCompilation(true).build()).build();
+
+    private static final String[] TEMPLATES = {
+            "plain text",
+            "<h1>{{ title | upcase | append: '!' }}</h1>{{ title }}",
+            "{% for p in products offset: 1 %}<li>{{ forloop.index }}: {{ p['title'] }}</li>{% else %}none{% endfor %}",
+            "{% for i in (1..5) %}{% if i == 2 %}{% continue %}{% endif %}{{ i }}{% if i >= 4 %}{% break %}{% endif %}-{% endfor %}",
+            "{% case title %}{% when 'Catalog', 2 %}cat{% else %}other{% endcase %}",
+            "{% capture x %}{{ title }}-{{ products | size }}{% endcapture %}[{{ x }}]",
+            "{% assign sorted = products | sort: 'price' %}{{ sorted | map: 'title' | join: ', ' }}",
+            "{% tablerow p in products cols: 2 %}{{ p.title }}{% endtablerow %}",
+            "{{ date | date: '%Y' }} {{ 1.5 | plus: 2 }} {{ products.first.title }}",
+            "{% if products.size > 1 and title contains 'Cat' or nil == empty %}many{% elsif products == blank %}none{% endif %}",
+            "{% unless title != 'x' %}{% cycle 'a', 'b' %}{% endunless %}{% raw %}{{ raw }}{% endraw %}",
+            "{% comment %}gone{% endcomment %}{% if 1 <= 2 and 3 < 4 %}{{ '€' }}{% endif %}",
+    };
+
+    @Test
+    public void loadedTemplatesRenderTheSame() throws IOException {
+        Map<String, Object> variables = variables();
+
+        for (String source : TEMPLATES) {
+            for (TemplateParser parser : Arrays.asList(TemplateParser.DEFAULT, OPTIMIZING)) {
+                Template template = parser.parse(source);
+                Template loaded = parser.loadCompiled(new ByteArrayInputStream(write(template)));
+
+                assertThat(source, loaded.render(variables), is(template.render(variables)));
+                assertThat(source, loaded.getNodeCount(), is(template.getNodeCount()));
+                assertThat(source, loaded.getUnoptimizedNodeCount(), is(template.getUnoptimizedNodeCount()));
+            }
+        }
+    }
+
+    @Test
+    public void templatesAreLoadedFromOneStreamInOrder() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String source : TEMPLATES) {
+            TemplateParser.DEFAULT.parse(source).writeCompiled(out);
+        }
+
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        for (String source : TEMPLATES) {
+            Template loaded = TemplateParser.DEFAULT.loadCompiled(in);
+            assertThat(loaded.getParseTree(), is(nullValue()));
+            assertThat(source, loaded.render(variables()),
+                    is(TemplateParser.DEFAULT.parse(source).render(variables())));
+        }
+        assertThat(in.read(), is(-1));
+    }
+
+    @Test
+    public void loadingAppliesTheParserSettings() throws IOException {
+        byte[] written = write(TemplateParser.DEFAULT.parse("{% if true %}a{% endif %}{{ title }}"));
+
+        Template optimized = OPTIMIZING.loadCompiled(new ByteArrayInputStream(written));
+        assertThat(optimized.getUnoptimizedNodeCount() > optimized.getNodeCount(), is(true));
+        assertThat(optimized.render(variables()), is("aCatalog"));
+
+        Template compiled = COMPILING.loadCompiled(new ByteArrayInputStream(written));
+        assertThat(compiled.getRootNode(), instanceOf(CompiledBlockNode.class));
+        assertThat(compiled.render(variables()), is("aCatalog"));
+
+        assertThat(TemplateParser.DEFAULT.loadCompiled(new ByteArrayInputStream(write(compiled)))
+                .render(variables()), is("aCatalog"));
+    }
+
+    @Test
+    public void filtersAreLookedUpByName() throws IOException {
+        Filter shout = new Filter("shout") {
+            @Override
+            public Object apply(Object value, TemplateContext context, Object... params) {
+                return super.asString(value, context) + "!";
+            }
+        };
+        TemplateParser parser = new TemplateParser.Builder()
+                .withParseSettings(new ParseSettings.Builder().with(shout).build()).build();
+
+        byte[] written = write(parser.parse("{{ title | shout }}"));
+
+        assertThat(parser.loadCompiled(new ByteArrayInputStream(written)).render(variables()),
+                is("Catalog!"));
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFlavorsAreRejected() throws IOException {
+        byte[] written = write(TemplateParser.DEFAULT.parse("{{ title }}"));
+
+        TemplateParser.DEFAULT_JEKYLL.loadCompiled(new ByteArrayInputStream(written));
+    }
+
+    @Test(expected = IOException.class)
+    public void otherInputIsRejected() throws IOException {
+        TemplateParser.DEFAULT.loadCompiled(new ByteArrayInputStream("{{ title }}".getBytes("UTF-8")));
+    }
+
+    private static byte[] write(Template template) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.writeCompiled(out);
+        return out.toByteArray();
+    }
+
+    private static Map<String, Object> variables() {
+        List<Map<String, Object>> products = new ArrayList<>();
+        for (String title : Arrays.asList("A", "B", "C")) {
+            Map<String, Object> product = new HashMap<>();
+            product.put("title", title);
+            product.put("price", 10 - title.charAt(0));
+            products.add(product);
+        }
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("title", "Catalog");
+        variables.put("products", products);
+        variables.put("date", LocalDate.of(2024, 5, 6));
+        return variables;
+    }
+}
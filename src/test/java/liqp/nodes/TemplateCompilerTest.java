@@ -0,0 +1,150 @@
+package liqp.nodes;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import liqp.ParseSettings;
+import liqp.Template;
+import liqp.TemplateParser;
+
+public class TemplateCompilerTest {
+
+    private static final TemplateParser COMPILING = new TemplateParser.Builder()
+            .withParseSettings(new ParseSettings.Builder().withBytecodeCompilation(true).build()).build();
+
+    private static final TemplateParser OPTIMIZING_AND_COMPILING = new TemplateParser.Builder()
+            .withParseSettings(new ParseSettings.Builder().withOptimize(true).withBytecodeCompilation(true)
+                    .build()).build();
+
+    private static final String[] TEMPLATES = {
+            "plain text",
+            "<h1>{{ title | upcase | append: '!' }}</h1>{{ title }}",
+            "{% for p in products %}<li>{{ forloop.index }}: {{ p.title }}</li>{% else %}none{% endfor %}",
+            "{% for p in products reversed limit: 2 %}{{ p.title }}{% unless forloop.last %}, {% endunless %}{% endfor %}",
+            "{% for i in (1..5) %}{% if i == 2 %}{% continue %}{% endif %}{{ i }}{% if i == 4 %}{% break %}{% endif %}-{% endfor %}",
+            "{% for i in (1..3) %}a{% break %}b{% endfor %}",
+            "{% for i in (1..3) %}{% for j in (1..3) %}{{ i }}{{ j }}{% if j == 2 %}{% break %}{% endif %} {% endfor %};{% endfor %}",
+            "{% case title %}{% when 'Catalog' %}cat{% else %}other{% endcase %}",
+            "{% capture x %}{{ title }}-{{ products | size }}{% endcapture %}[{{ x }}]",
+            "{% assign sorted = products | sort: 'price' %}{{ sorted | map: 'title' | join: ', ' }}",
+            "{% tablerow p in products cols: 2 %}{{ p.title }}{% endtablerow %}",
+            "{{ numbers }} {{ date }} {{ date | date: '%Y' }}",
+            "{% if products.size > 1 %}many{% elsif products.size == 1 %}one{% endif %}",
+            "{% raw %}{{ not rendered }}{% endraw %}{% comment %}gone{% endcomment %}",
+    };
+
+    @Test
+    public void compiledTemplatesRenderTheSame() {
+        Map<String, Object> variables = variables();
+
+        for (String source : TEMPLATES) {
+            String expected = TemplateParser.DEFAULT.parse(source).render(variables);
+
+            for (TemplateParser parser : Arrays.asList(COMPILING, OPTIMIZING_AND_COMPILING)) {
+                Template template = parser.parse(source);
+                assertThat(source, template.render(variables), is(expected));
+
+                StringBuilder streamed = new StringBuilder();
+                template.render(variables, streamed);
+                assertThat(source, streamed.toString(), is(expected));
+            }
+        }
+    }
+
+    @Test
+    public void blocksAreCompiled() {
+        Template template = COMPILING.parse("{% for p in products %}{% if p %}{{ p.title }}{% endif %}{% endfor %}");
+
+        assertThat(template.getRootNode(), instanceOf(CompiledBlockNode.class));
+        assertThat(template.render(variables()), is("ABC"));
+    }
+
+    @Test
+    public void blocksOfATemplateShareOneClass() {
+        Template template = COMPILING.parse("{% for p in products %}{% if p %}{{ p.title }}{% endif %}{% endfor %}"
+                + "{% if title %}{% for i in (1..2) %}{{ i }}{% endfor %}{% endif %}");
+
+        List<CompiledBlockNode> blocks = new ArrayList<>();
+        collectCompiledBlocks(template.getRootNode(), blocks);
+        assertThat(blocks.size(), is(5));
+        for (CompiledBlockNode block : blocks) {
+            assertThat(block.getCode(), sameInstance(blocks.get(0).getCode()));
+        }
+        assertThat(template.render(variables()), is("ABC12"));
+    }
+
+    @Test
+    public void blocksBeyondTheLimitsOfAClassAreNotCompiled() {
+        StringBuilder source = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 2500; i++) {
+            source.append("{% if true %}{{ title }}").append(i).append("{% endif %}");
+            expected.append("Catalog").append(i);
+        }
+
+        Template template = COMPILING.parse(source.toString());
+        List<CompiledBlockNode> blocks = new ArrayList<>();
+        collectCompiledBlocks(template.getRootNode(), blocks);
+        assertThat(blocks.size(), is(2000));
+        assertThat(template.render(variables()), is(expected.toString()));
+    }
+
+    @Test
+    public void largeBlocksAndTextAreRendered() {
+        StringBuilder source = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1200; i++) {
+            source.append("{{ title }}");
+            expected.append("Catalog");
+        }
+        char[] text = new char[70000];
+        Arrays.fill(text, '€');
+        source.append(text);
+        expected.append(text);
+
+        assertThat(COMPILING.parse("{% if true %}" + source + "{% endif %}").render(variables()),
+                is(expected.toString()));
+    }
+
+    private static void collectCompiledBlocks(LNode node, List<CompiledBlockNode> blocks) {
+        if (node instanceof CompiledBlockNode) {
+            blocks.add((CompiledBlockNode) node);
+        }
+        if (node instanceof BlockNode) {
+            for (LNode child : ((BlockNode) node).getChildren()) {
+                collectCompiledBlocks(child, blocks);
+            }
+        } else if (node instanceof InsertionNode) {
+            for (LNode token : ((InsertionNode) node).tokens) {
+                collectCompiledBlocks(token, blocks);
+            }
+        }
+    }
+
+    private static Map<String, Object> variables() {
+        List<Map<String, Object>> products = new ArrayList<>();
+        for (String title : Arrays.asList("A", "B", "C")) {
+            Map<String, Object> product = new HashMap<>();
+            product.put("title", title);
+            product.put("price", 10 - title.charAt(0));
+            products.add(product);
+        }
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("title", "Catalog");
+        variables.put("products", products);
+        variables.put("numbers", new Object[] { 1, 2.5, "three" });
+        variables.put("date", LocalDateTime.of(2024, 5, 6, 7, 8, 9));
+        return variables;
+    }
+}
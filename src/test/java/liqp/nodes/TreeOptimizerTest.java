@@ -0,0 +1,102 @@
+package liqp.nodes;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import liqp.ParseSettings;
+import liqp.RenderSettings;
+import liqp.Template;
+import liqp.TemplateParser;
+import liqp.parser.Flavor;
+
+public class TreeOptimizerTest {
+
+    private static final TemplateParser OPTIMIZING = new TemplateParser.Builder()
+            .withParseSettings(new ParseSettings.Builder().withOptimize(true).build()).build();
+
+    private static final String[] TEMPLATES = {
+            "a{% if true %}b{% endif %}c",
+            "a{% if false %}b{% else %}c{% endif %}d",
+            "{% if 1 == 1 %}one{% elsif x %}x{% endif %}",
+            "{% if x %}x{% elsif 2 > 1 %}two{% else %}else{% endif %}",
+            "{% if x %}x{% elsif false %}no{% else %}else{% endif %}",
+            "{% unless 1 == 2 %}unless{% else %}else{% endunless %}",
+            "{% unless true %}unless{% endunless %}-",
+            "{% if true and x %}x{% endif %}{% if false and x %}x{% endif %}{% if true or x %}y{% endif %}",
+            "{% if 'abc' contains 'b' and 1 < 2 %}yes{% endif %}",
+            "{% if nil == empty %}a{% else %}b{% endif %}",
+            "{% case 2 %}{% when 1 %}one{% when 2, 3 %}two{% else %}else{% endcase %}",
+            "{% case 'z' %}{% when 'a' %}a{% else %}else{% endcase %}",
+            "{% case 'z' %}{% when 'a' %}a{% endcase %}",
+            "{% case x %}{% when 1 %}one{% else %}else{% endcase %}",
+            "{% for i in (1..3) %}{% if true %}{{ i }}{% if i == 2 %}{% break %}{% endif %}{% endif %}{% endfor %}",
+            "{% for i in (1..3) %}{% if true %}a{% continue %}b{% endif %}{% endfor %}",
+            "{{ 'static' }} {{ 'out' | upcase }} {{ x }}",
+            "{% if 'a' > 1 %}a{% else %}b{% endif %}",
+    };
+
+    @Test
+    public void optimizedTemplatesRenderTheSame() {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("x", 1);
+
+        for (String source : TEMPLATES) {
+            assertThat(source, render(OPTIMIZING, source, variables),
+                    is(render(TemplateParser.DEFAULT, source, variables)));
+            assertThat(source, render(OPTIMIZING, source, new HashMap<>()),
+                    is(render(TemplateParser.DEFAULT, source, new HashMap<>())));
+        }
+    }
+
+    @Test
+    public void literalsAreComparedWithTheSettingsOfTheParser() {
+        for (Flavor flavor : Flavor.values()) {
+            RenderSettings strict = new RenderSettings.Builder().withStrictVariables(true)
+                    .withRaiseExceptionsInStrictMode(false).build();
+            TemplateParser plain = new TemplateParser.Builder().withRenderSettings(strict)
+                    .withParseSettings(new ParseSettings.Builder().withFlavor(flavor).build()).build();
+            TemplateParser optimizing = new TemplateParser.Builder().withRenderSettings(strict)
+                    .withParseSettings(new ParseSettings.Builder().withFlavor(flavor).withOptimize(true).build())
+                    .build();
+
+            for (String source : TEMPLATES) {
+                Template expected = plain.parse(source);
+                Template actual = optimizing.parse(source);
+                assertThat(flavor + " " + source, actual.render(), is(expected.render()));
+                assertThat(flavor + " " + source, actual.errors().size(), is(expected.errors().size()));
+            }
+        }
+    }
+
+    @Test
+    public void staticTemplatesBecomeOneString() {
+        Template template = OPTIMIZING.parse("<ul>{% if true %}<li>{{ 'a' }}</li>{% endif %}"
+                + "{% if 1 > 2 %}<li>b</li>{% endif %}</ul>");
+
+        BlockNode root = (BlockNode) template.getRootNode();
+        assertThat(root.getChildren().size(), is(1));
+        assertThat(root.getChildren().get(0), instanceOf(AtomNode.class));
+        assertThat(template.render(), is("<ul><li>a</li></ul>"));
+        assertThat(template.getNodeCount(), is(2));
+        assertTrue(template.getUnoptimizedNodeCount() > template.getNodeCount());
+    }
+
+    @Test
+    public void unoptimizedTemplatesReportTheirCount() {
+        Template template = TemplateParser.DEFAULT.parse("a{% if true %}b{% endif %}c");
+
+        assertThat(template.getNodeCount(), is(template.getUnoptimizedNodeCount()));
+        assertThat(((BlockNode) template.getRootNode()).getChildren().size(), is(3));
+    }
+
+    private static String render(TemplateParser parser, String source, Map<String, Object> variables) {
+        return parser.parse(source).render(variables);
+    }
+}
@@ -3,14 +3,27 @@ package liqp.parser;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.junit.Test;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import liqp.RenderSettings;
+import liqp.Template;
+import liqp.TemplateContext;
 import liqp.TemplateParser;
+import liqp.spi.SPIHelper;
 
 public class LiquidSupportTest {
 
@@ -231,4 +244,184 @@ public class LiquidSupportTest {
 
         assertThat(fooA, is("OK"));
     }
+
+    @Test
+    public void typeReferencingMapperIsDerivedOncePerMapper() {
+        ObjectMapper mapper = TemplateParser.DEFAULT.getParseSettings().mapper;
+        ObjectMapper other = new ObjectMapper();
+
+        ObjectMapper copy = SPIHelper.getTypeReferencingMapper(mapper);
+        ObjectMapper otherCopy = SPIHelper.getTypeReferencingMapper(other);
+
+        assertNotSame(mapper, copy);
+        assertNotSame(copy, otherCopy);
+        assertSame(copy, SPIHelper.getTypeReferencingMapper(mapper));
+        assertSame(otherCopy, SPIHelper.getTypeReferencingMapper(other));
+    }
+
+    public static class CountingInspectable implements Inspectable {
+        private int conversions;
+        public String getTitle() { return "T"; }
+        public int getPrice() { return 3; }
+        public PojoChild getChild() { conversions++; return new PojoChild(); }
+    }
+
+    @Test
+    public void inspectableIsConvertedOncePerRender() {
+        CountingInspectable product = new CountingInspectable();
+        Map<String, Object> in = new HashMap<>();
+        in.put("product", product);
+        Template template = TemplateParser.DEFAULT.parse(
+                "{{ product.child.val }}{{ product.price }}{% for i in (1..3) %}{{ product.child.val }}{% endfor %}");
+
+        assertEquals("childOK3childOKchildOKchildOK", template.render(in));
+        assertEquals(1, product.conversions);
+
+        // a new render converts it again
+        template.render(in);
+        assertEquals(2, product.conversions);
+    }
+
+    @Test
+    public void onlyRecentConversionsAreRemembered() {
+        TemplateContext context = new TemplateContext(TemplateParser.DEFAULT, new HashMap<>());
+        CountingInspectable product = new CountingInspectable();
+
+        context.evaluate(product);
+        context.evaluate(product);
+        assertEquals(1, product.conversions);
+
+        // the items of a long sequence push it out
+        for (int i = 0; i < 10000; i++) {
+            context.evaluate(new PojoChild());
+        }
+        context.evaluate(product);
+        assertEquals(2, product.conversions);
+    }
+
+    public static class Product implements Inspectable {
+        private int conversions;
+        public String getTitle() { return "Shoe"; }
+        public boolean isAvailable() { return true; }
+        public short getStock() { return 7; }
+        public char getSize() { return 'M'; }
+        @JsonProperty("sku")
+        public String getCode() { return "S-1"; }
+        @JsonIgnore
+        public String getSecret() { return "hidden"; }
+        public PojoChild getChild() { conversions++; return new PojoChild(); }
+    }
+
+    @Test
+    public void propertiesAreReadDirectly() {
+        Product product = new Product();
+        Map<String, Object> in = new HashMap<>();
+        in.put("product", product);
+
+        String res = TemplateParser.DEFAULT.parse(
+                "{{ product.title }} {{ product.available }} {{ product.stock | plus: 1 }} {{ product.size }} "
+                        + "{{ product.sku }}").render(in);
+
+        assertEquals("Shoe true 8 M S-1", res);
+        assertEquals(0, product.conversions);
+    }
+
+    @Test
+    public void directPropertiesMatchTheConversion() {
+        Product product = new Product();
+        PropertyAccessors accessors = PropertyAccessors.forMapper(TemplateParser.DEFAULT.getParseSettings().mapper);
+        Map<String, Object> converted = new LiquidSupport.LiquidSupportFromInspectable(
+                TemplateParser.DEFAULT.getParseSettings().mapper, product).toLiquid();
+
+        for (String name : new String[] { "title", "available", "stock", "size", "sku" }) {
+            assertEquals(name, converted.get(name), accessors.get(product, name));
+        }
+        assertSame(PropertyAccessors.UNRESOLVED, accessors.get(product, "secret"));
+        assertSame(PropertyAccessors.UNRESOLVED, accessors.get(product, "child"));
+    }
+
+    public static class Amounts implements Inspectable {
+        public BigDecimal getPrice() { return new BigDecimal("1.10"); }
+        public BigInteger getCount() { return new BigInteger("12345678901234567890"); }
+        public float getRatio() { return 0.1f; }
+        public double getShare() { return 2.50; }
+        public long getTotal() { return 3L; }
+    }
+
+    @Test
+    public void directNumbersMatchTheConversion() {
+        Amounts amounts = new Amounts();
+        PropertyAccessors accessors = PropertyAccessors.forMapper(TemplateParser.DEFAULT.getParseSettings().mapper);
+        Map<String, Object> converted = new LiquidSupport.LiquidSupportFromInspectable(
+                TemplateParser.DEFAULT.getParseSettings().mapper, amounts).toLiquid();
+
+        for (String name : new String[] { "price", "count", "ratio", "share", "total" }) {
+            Object direct = accessors.get(amounts, name);
+            if (direct != PropertyAccessors.UNRESOLVED) {
+                assertEquals(name, converted.get(name), direct);
+            }
+        }
+
+        Map<String, Object> in = new HashMap<>();
+        in.put("amounts", amounts);
+        assertEquals("1.1", TemplateParser.DEFAULT.parse("{{ amounts.price }}").render(in));
+    }
+
+    public static class Failing implements Inspectable {
+        int calls;
+        public String getName() { calls++; throw new IllegalStateException("unavailable"); }
+    }
+
+    @Test
+    public void failingGettersAreCalledOnce() {
+        Failing failing = new Failing();
+        Map<String, Object> in = new HashMap<>();
+        in.put("failing", failing);
+
+        try {
+            TemplateParser.DEFAULT.parse("{{ failing.name }}").render(in);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("unavailable", e.getMessage());
+        }
+        assertEquals(1, failing.calls);
+        assertSame(TemplateParser.DEFAULT.getParseSettings().getPropertyAccessors(),
+                TemplateParser.DEFAULT.getParseSettings().getPropertyAccessors());
+    }
+
+    @Test
+    public void whereReadsPropertiesDirectly() {
+        Product product = new Product();
+        Map<String, Object> in = new HashMap<>();
+        in.put("products", new Object[] { product });
+
+        String res = TemplateParser.DEFAULT.parse(
+                "{{ products | where: 'sku', 'S-1' | map: 'title' }}").render(in);
+
+        assertEquals("Shoe", res);
+    }
+
+    public static class Period {
+        public LocalDate start = LocalDate.of(2020, 1, 1);
+        public LocalDate end = LocalDate.of(2020, 1, 1);
+    }
+
+    @Test
+    public void temporalValuesSurviveEagerConversion() {
+        Period period = new Period();
+        Map<String, Object> in = new HashMap<>();
+        in.put("period", period);
+
+        Map<String, Object> converted = LiquidSupport.LiquidSupportFromInspectable.objectToMap(
+                TemplateParser.DEFAULT.getParseSettings().mapper, in);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> convertedPeriod = (Map<String, Object>) converted.get("period");
+        assertSame(period.start, convertedPeriod.get("start"));
+        assertSame(period.end, convertedPeriod.get("end"));
+
+        // equal dates converted within the same millisecond
+        String res = EAGER_RENDERING_PARSER.parse(
+                "{{ period.start | date: '%Y-%m-%d' }}/{{ period.end | date: '%Y-%m-%d' }}").render(in);
+        assertEquals("2020-01-01/2020-01-01", res);
+    }
 }
@@ -0,0 +1,194 @@
+package liqp.query;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import liqp.TemplateParser;
+import liqp.parser.Flavor;
+
+public class InMemoryQueryableCollectionTest {
+
+    // records the queries that run
+    static class RecordingCollection implements QueryableCollection<Map<String, ?>> {
+        private final InMemoryQueryableCollection delegate;
+        final List<String> queries = new ArrayList<>();
+
+        RecordingCollection(InMemoryQueryableCollection delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public List<?> fetch(Query query) {
+            queries.add("fetch " + query);
+            return delegate.fetch(query);
+        }
+
+        @Override
+        public int count(Query query) {
+            queries.add("count " + query);
+            return delegate.count(query);
+        }
+
+        @Override
+        public Iterator<Map<String, ?>> iterator() {
+            queries.add("iterate");
+            return delegate.iterator();
+        }
+    }
+
+    private static Map<String, Object> product(String title, long price, boolean available, String type) {
+        Map<String, Object> product = new HashMap<>();
+        product.put("title", title);
+        product.put("price", price);
+        product.put("available", available);
+        product.put("type", type);
+        return product;
+    }
+
+    private static InMemoryQueryableCollection products() {
+        return new InMemoryQueryableCollection(Arrays.asList(
+                product("Shirt", 30, true, "clothes"),
+                product("Hat", 10, false, "clothes"),
+                product("Mug", 5, true, "kitchen"),
+                product("Pan", 40, true, "kitchen"),
+                product("Sock", 5, true, "clothes")), "type", "available");
+    }
+
+    private static String render(String template, Object products) {
+        return render(TemplateParser.DEFAULT, template, products);
+    }
+
+    private static String render(TemplateParser parser, String template, Object products) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("products", products);
+        return parser.parse(template).render(data);
+    }
+
+    @Test
+    public void filtersAreRunAsOneQuery() {
+        RecordingCollection products = new RecordingCollection(products());
+
+        assertThat(render("{{ products | where: 'available', true | sort: 'price' | map: 'title' | first }}", products),
+                is("Mug"));
+        assertThat(products.queries, is(Arrays.asList(
+                "fetch Query{where=[available == true], sort=price, limit=1, map=title}")));
+    }
+
+    @Test
+    public void queriesMatchTheFiltersOnArrays() {
+        String[] templates = {
+                "{{ products | where: 'type', 'kitchen' | map: 'title' | join: ',' }}",
+                "{{ products | where: 'available' | where: 'type', 'clothes' | map: 'title' | join: ',' }}",
+                "{{ products | sort: 'price' | map: 'title' | join: ',' }}",
+                "{{ products | sort: 'price' | last | map: 'title' }}",
+                "{{ products | where: 'price', 5 | size }}",
+                "{{ products | map: 'title' | sort | join: ',' }}",
+                "{{ products | where: 'type', 'clothes' | reverse | map: 'title' | join: ',' }}",
+                "{{ products | where: 'type', 'none' | first }}",
+                "{% assign cheap = products | where: 'price', 5 %}{{ cheap.size }} {{ cheap.first.title }}"
+                        + "{% for p in cheap %} {{ p.title }}{% endfor %}",
+                "{{ products | where: 'type', 'clothes' | map: 'title' }}",
+        };
+
+        List<Map<String, ?>> array = new ArrayList<>();
+        products().forEach(array::add);
+
+        for (String template : templates) {
+            assertThat(template, render(template, products()), is(render(template, array)));
+        }
+    }
+
+    @Test
+    public void sizeOfAnUnselectedCollectionDoesNotFetch() {
+        InMemoryQueryableCollection delegate = products();
+        List<String> queries = new ArrayList<>();
+        QueryableCollection<Map<String, ?>> products = new QueryableCollection<Map<String, ?>>() {
+            @Override
+            public List<?> fetch(Query query) {
+                queries.add("fetch " + query);
+                return delegate.fetch(query);
+            }
+
+            @Override
+            public int size() {
+                return delegate.size();
+            }
+
+            @Override
+            public Iterator<Map<String, ?>> iterator() {
+                queries.add("iterate");
+                return delegate.iterator();
+            }
+        };
+
+        assertThat(render("{{ products | size }} {{ products | sort: 'price' | size }}", products), is("5 5"));
+        assertThat(queries.size(), is(0));
+
+        assertThat(render("{{ products | where: 'price', 5 | size }}", products), is("2"));
+        assertThat(queries.size(), is(1));
+    }
+
+    private static Map<String, Object> item(String name, Object... value) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("name", name);
+        if (value.length > 0) {
+            item.put("p", value[0]);
+        }
+        return item;
+    }
+
+    @Test
+    public void valuesAreEqualAsForTheWhereFilterOnArrays() {
+        List<Map<String, ?>> array = Arrays.asList(item("int", 1), item("long", 1L), item("double", 1.0),
+                item("string", "1"), item("null", (Object) null), item("missing"), item("false", false),
+                item("list", Arrays.asList(1, 2)));
+        String[] targets = { "1", "1.0", "'1'", "nil", "false", "one" };
+
+        for (String target : targets) {
+            String template = "{{ items | where: 'p', " + target + " | map: 'name' | join: ',' }}";
+            Map<String, Object> data = new HashMap<>();
+            data.put("one", 1);
+            data.put("items", array);
+            String expected = TemplateParser.DEFAULT.parse(template).render(data);
+
+            data.put("items", new InMemoryQueryableCollection(array));
+            assertThat(template, TemplateParser.DEFAULT.parse(template).render(data), is(expected));
+            data.put("items", new InMemoryQueryableCollection(array, "p"));
+            assertThat(template, TemplateParser.DEFAULT.parse(template).render(data), is(expected));
+        }
+    }
+
+    @Test
+    public void indexedAndScannedConditionsAgree() {
+        InMemoryQueryableCollection products = products();
+
+        Query query = Query.of(products).where("type", "clothes").where("price", 5L);
+        assertThat(query.count(), is(1));
+        assertThat(Query.of(products).where("type", "clothes").map("title").fetch(),
+                is(Arrays.<Object>asList("Shirt", "Hat", "Sock")));
+        assertThat(Query.of(products).where("price", 10L).map("title").fetch(),
+                is(Arrays.<Object>asList("Hat")));
+        assertThat(Query.of(products).where("price", 10.0).count(), is(0));
+        assertThat(Query.of(products).where("available", false).map("title").fetch(),
+                is(Arrays.<Object>asList("Hat")));
+    }
+
+    @Test
+    public void jekyllWhereIteratesTheCollection() {
+        RecordingCollection products = new RecordingCollection(products());
+        TemplateParser jekyll = Flavor.JEKYLL.defaultParser();
+
+        assertThat(render(jekyll, "{{ products | where: 'type', 'kitchen' | map: 'title' | join: ',' }}", products),
+                is("Mug,Pan"));
+        assertThat(products.queries, is(Arrays.asList("iterate")));
+    }
+}